@@ -0,0 +1,36 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.benchmark;
+
+import com.fferreira.example.hazelcast.mapstore.EntryEntity;
+import com.fferreira.example.hazelcast.mapstore.HazelcastDao;
+import com.fferreira.example.hazelcast.mapstore.cassandra.CassandraClient;
+
+/**
+ * Map store on a local Cassandra node given by the cassandra.ip system
+ * property.
+ */
+public class CassandraMapStoreBenchmark extends MapStoreBenchmark {
+
+  @Override
+  protected HazelcastDao<EntryEntity> createDao() {
+    final CassandraClient client = new CassandraClient();
+    client.initialize(System.getProperty("cassandra.ip", "127.0.0.1"));
+    return client;
+  }
+
+  @Override
+  protected void closeDao(HazelcastDao<EntryEntity> dao) {
+    ((CassandraClient) dao).close();
+  }
+}
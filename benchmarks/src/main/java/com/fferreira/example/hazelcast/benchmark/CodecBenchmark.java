@@ -0,0 +1,67 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.benchmark;
+
+import com.fferreira.example.hazelcast.User;
+import com.fferreira.example.hazelcast.mapstore.codec.ValueCodec;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Value serialization cost on its own, the part of every store and load that
+ * does not depend on the DAO.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+  @Param({Codecs.JSON, Codecs.SMILE, Codecs.CBOR, Codecs.HAZELCAST,
+    Codecs.JSON_ZSTD})
+  public String codec;
+
+  private ValueCodec<User> valueCodec;
+  private User user;
+  private byte[] encoded;
+
+  @Setup
+  public void setUp() throws IOException {
+    valueCodec = Codecs.create(codec, User.class);
+    user = new User("Flávio", "Ferreira", "Portugal");
+    encoded = valueCodec.encode(user);
+  }
+
+  @Benchmark
+  public byte[] encode() throws IOException {
+    return valueCodec.encode(user);
+  }
+
+  @Benchmark
+  public User decode() throws IOException {
+    return valueCodec.decode(encoded);
+  }
+}
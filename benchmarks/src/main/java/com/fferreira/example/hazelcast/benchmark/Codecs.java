@@ -0,0 +1,51 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.benchmark;
+
+import com.fferreira.example.hazelcast.mapstore.codec.CompressingCodec;
+import com.fferreira.example.hazelcast.mapstore.codec.HazelcastCodec;
+import com.fferreira.example.hazelcast.mapstore.codec.JacksonCodec;
+import com.fferreira.example.hazelcast.mapstore.codec.ValueCodec;
+
+/**
+ * Codecs selectable by name from benchmark parameters.
+ */
+final class Codecs {
+
+  static final String JSON = "json";
+  static final String SMILE = "smile";
+  static final String CBOR = "cbor";
+  static final String HAZELCAST = "hazelcast";
+  static final String JSON_ZSTD = "json-zstd";
+
+  private Codecs() {
+  }
+
+  static <V> ValueCodec<V> create(final String name, final Class<V> type) {
+    switch (name) {
+      case JSON:
+        return JacksonCodec.json(type);
+      case SMILE:
+        return JacksonCodec.smile(type);
+      case CBOR:
+        return JacksonCodec.cbor(type);
+      case HAZELCAST:
+        return new HazelcastCodec<>();
+      case JSON_ZSTD:
+        return new CompressingCodec<>(JacksonCodec.json(type), 0,
+            CompressingCodec.DEFAULT_LEVEL, null);
+      default:
+        throw new IllegalArgumentException("Unknown codec " + name);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.benchmark;
+
+import com.fferreira.example.hazelcast.mapstore.EntryEntity;
+import com.fferreira.example.hazelcast.mapstore.HazelcastDao;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link HazelcastDao} keeping entries in memory, used to measure the map
+ * store overhead without any database round trip.
+ */
+public class InMemoryDao implements HazelcastDao<EntryEntity> {
+
+  private final ConcurrentMap<String, EntryEntity> entries =
+      new ConcurrentHashMap<>();
+
+  @Override
+  public void persist(EntryEntity val) {
+    entries.put(val.getId(), val);
+  }
+
+  @Override
+  public void persistAll(Collection<EntryEntity> vals) {
+    vals.stream().
+        forEach((val) -> {
+          persist(val);
+    });
+  }
+
+  @Override
+  public void remove(String id, long version) {
+    entries.remove(id);
+  }
+
+  @Override
+  public void removeAll(Map<String, Long> versions) {
+    versions.forEach((id, version) -> {
+      remove(id, version);
+    });
+  }
+
+  @Override
+  public EntryEntity find(String id) {
+    return entries.get(id);
+  }
+
+  @Override
+  public List<EntryEntity> findAll() {
+    return new ArrayList<>(entries.values());
+  }
+
+  @Override
+  public Iterable<String> findAllIds() {
+    return entries.keySet();
+  }
+
+  @Override
+  public List<EntryEntity> findAll(Collection<String> ids) {
+    final List<EntryEntity> result = new ArrayList<>(ids.size());
+    ids.stream().
+        forEach((id) -> {
+          final EntryEntity entry = entries.get(id);
+          if (entry != null) {
+            result.add(entry);
+          }
+    });
+    return result;
+  }
+}
@@ -10,23 +10,22 @@
  * License for the specific language governing permissions and limitations under
  * the License.
  */
-package com.fferreira.example.hazelcast;
+package com.fferreira.example.hazelcast.benchmark;
 
-import com.hazelcast.query.Predicate;
-import java.util.Map;
+import com.fferreira.example.hazelcast.mapstore.EntryEntity;
+import com.fferreira.example.hazelcast.mapstore.HazelcastDao;
 
-public class UserByFirstNamePredicate implements
-    Predicate<String, User> {
-
-  private final String firstName;
+/**
+ * Map store overhead alone, on top of an in-memory DAO.
+ */
+public class InMemoryMapStoreBenchmark extends MapStoreBenchmark {
 
-  public UserByFirstNamePredicate(String firstName) {
-    this.firstName = firstName;
+  @Override
+  protected HazelcastDao<EntryEntity> createDao() {
+    return new InMemoryDao();
   }
 
   @Override
-  public boolean apply(Map.Entry<String, User> mapEntry) {
-    return mapEntry.getValue().getFirtName().equalsIgnoreCase(firstName);
+  protected void closeDao(HazelcastDao<EntryEntity> dao) {
   }
-
 }
@@ -0,0 +1,130 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.benchmark;
+
+import com.fferreira.example.hazelcast.User;
+import com.fferreira.example.hazelcast.mapstore.EntryEntity;
+import com.fferreira.example.hazelcast.mapstore.HazelcastDao;
+import com.fferreira.example.hazelcast.mapstore.HazelcastMapStore;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link HazelcastMapStore} operations against the DAO provided by each
+ * subclass. The store is filled with {@code entries} users before measuring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class MapStoreBenchmark {
+
+  @Param({Codecs.JSON, Codecs.SMILE})
+  public String codec;
+
+  @Param("10000")
+  public int entries;
+
+  @Param("100")
+  public int batchSize;
+
+  private HazelcastDao<EntryEntity> dao;
+  private HazelcastMapStore<String, User> store;
+  private List<String> keys;
+  private Map<String, User> batch;
+  private int next;
+
+  protected abstract HazelcastDao<EntryEntity> createDao();
+
+  protected abstract void closeDao(HazelcastDao<EntryEntity> dao);
+
+  @Setup
+  public void setUp() {
+    dao = createDao();
+    store = new HazelcastMapStore<>(String.class, User.class, dao, Codecs
+        .create(codec, User.class));
+    keys = new ArrayList<>(entries);
+    final Map<String, User> all = new HashMap<>();
+    for (int i = 0; i < entries; i++) {
+      final String key = "user_benchmark_" + i;
+      keys.add(key);
+      all.put(key, user(i));
+    }
+    store.storeAll(all);
+    batch = new HashMap<>();
+    keys.subList(0, batchSize).stream().
+        forEach((key) -> {
+          batch.put(key, all.get(key));
+    });
+  }
+
+  @TearDown
+  public void tearDown() {
+    store.deleteAll(keys);
+    closeDao(dao);
+  }
+
+  @Benchmark
+  public void store() {
+    final int i = nextIndex();
+    store.store(keys.get(i), user(i));
+  }
+
+  @Benchmark
+  public void storeAll() {
+    store.storeAll(batch);
+  }
+
+  @Benchmark
+  public User load() {
+    return store.load(keys.get(nextIndex()));
+  }
+
+  @Benchmark
+  public Map<String, User> loadAll() {
+    return store.loadAll(batch.keySet());
+  }
+
+  @Benchmark
+  public void loadAllKeys(final Blackhole bh) {
+    store.loadAllKeys().forEach(bh::consume);
+  }
+
+  // private API
+  private int nextIndex() {
+    next = next + 1 == entries ? 0 : next + 1;
+    return next;
+  }
+
+  private static User user(final int i) {
+    return new User("First" + i, "Last" + i, "Portugal");
+  }
+}
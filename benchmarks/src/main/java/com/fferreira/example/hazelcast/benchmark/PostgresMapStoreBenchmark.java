@@ -0,0 +1,47 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.benchmark;
+
+import com.fferreira.example.hazelcast.mapstore.EntryEntity;
+import com.fferreira.example.hazelcast.mapstore.HazelcastDao;
+import com.fferreira.example.hazelcast.mapstore.postgres.EntryEntityDao;
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.Persistence;
+
+/**
+ * Map store on a local PostgreSQL, configured with the postgres.url,
+ * postgres.user and postgres.password system properties.
+ */
+public class PostgresMapStoreBenchmark extends MapStoreBenchmark {
+
+  @Override
+  protected HazelcastDao<EntryEntity> createDao() {
+    final Map<String, Object> props = new HashMap<>();
+    props.put("javax.persistence.jdbc.url", System.getProperty(
+        "postgres.url", "jdbc:postgresql://localhost:5432/bedbtest"));
+    props.put("javax.persistence.jdbc.user", System.getProperty(
+        "postgres.user", "postgres"));
+    props.put("javax.persistence.jdbc.password", System.getProperty(
+        "postgres.password", ""));
+    return new EntryEntityDao(Persistence.createEntityManagerFactory(
+        "postgres_benchmark", props));
+  }
+
+  @Override
+  protected void closeDao(HazelcastDao<EntryEntity> dao) {
+    final EntryEntityDao entryDao = (EntryEntityDao) dao;
+    entryDao.close();
+    entryDao.getEntityManagerFactory().close();
+  }
+}
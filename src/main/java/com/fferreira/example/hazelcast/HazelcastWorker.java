@@ -14,12 +14,19 @@ package com.fferreira.example.hazelcast;
 
 import com.hazelcast.client.HazelcastClient;
 import com.hazelcast.client.config.ClientConfig;
+import com.hazelcast.config.EvictionPolicy;
 import com.hazelcast.config.GroupConfig;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.NearCacheConfig;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IMap;
 import com.hazelcast.core.OperationTimeoutException;
+import com.hazelcast.monitor.NearCacheStats;
+import com.hazelcast.query.PagingPredicate;
+import com.hazelcast.query.Predicates;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,19 +39,48 @@ public class HazelcastWorker {
   private final HazelcastInstance hcInstance;
 
   public HazelcastWorker(final String datastore) {
+    this(datastore, null);
+  }
+
+  /**
+   * Creates a worker whose client keeps a near cache of the users map, so
+   * repeated reads of the same user are served locally.
+   *
+   * @param nearCacheConfig near cache settings, see
+   * {@link #nearCacheConfig(int, int)}, or {@code null} for none
+   */
+  public HazelcastWorker(final String datastore,
+      final NearCacheConfig nearCacheConfig) {
     log.info("Creating Hazelcast CEP worker..");
-    hcInstance = HazelcastClient.newHazelcastClient(getConfig());
+    hcInstance = HazelcastClient.newHazelcastClient(getConfig(datastore,
+        nearCacheConfig));
     usersMap = hcInstance.getMap(datastore);
     log.info("Created CEP worker.");
   }
 
+  /**
+   * Near cache holding up to {@code maxSize} users, evicted LRU and expired
+   * after {@code ttlSeconds} (0 for never). Entries are invalidated when
+   * the user is updated or removed anywhere in the cluster.
+   */
+  public static NearCacheConfig nearCacheConfig(final int maxSize,
+      final int ttlSeconds) {
+    final NearCacheConfig nearCacheConfig = new NearCacheConfig();
+    nearCacheConfig.setMaxSize(maxSize);
+    nearCacheConfig.setTimeToLiveSeconds(ttlSeconds);
+    nearCacheConfig.setEvictionPolicy(EvictionPolicy.LRU.name());
+    nearCacheConfig.setInvalidateOnChange(true);
+    nearCacheConfig.setInMemoryFormat(InMemoryFormat.OBJECT);
+    return nearCacheConfig;
+  }
+
   public void addUser(final String id, final User message) {
-    log.info("Storing user {} with id {}", message, id);
+    log.debug("Storing user with id {}", id);
     usersMap.put(id, message);
   }
 
   public void removeUser(final String id) {
-    log.info("Removing user {}", id);
+    log.debug("Removing user {}", id);
     usersMap.remove(id);
   }
 
@@ -60,12 +96,12 @@ public class HazelcastWorker {
 
     log.info("Finding user with firtname {}.", firstName);
     // retrieve interested subscriber types
-    Collection<User> users = Collections.EMPTY_SET;
+    Collection<User> users = Collections.emptySet();
 
     try {
-      final UserByFirstNamePredicate predicate = new UserByFirstNamePredicate(
-          firstName);
-      users = usersMap.getAll(usersMap.keySet(predicate)).values();
+      // single round trip, answered from the first name index
+      users = usersMap.values(Predicates.equal(User.FIRST_NAME_NORMALIZED,
+          User.normalize(firstName)));
       log.info("Found {} users with firstname {} .", users.size(), firstName);
 
     } catch (OperationTimeoutException ote) {
@@ -75,6 +111,48 @@ public class HazelcastWorker {
     return users;
   }
 
+  /**
+   * Returns one page of the users with the given first name, ordered by id.
+   * Pages are numbered from zero.
+   */
+  public Collection<User> getUsersByFirstName(final String firstName,
+      final int page, final int pageSize) {
+
+    log.info("Finding page {} of users with firtname {}.", page, firstName);
+    Collection<User> users = Collections.emptySet();
+
+    try {
+      final PagingPredicate predicate = firstNamePagingPredicate(firstName,
+          pageSize);
+      predicate.setPage(page);
+      users = usersMap.values(predicate);
+
+    } catch (OperationTimeoutException ote) {
+      log.error("Hazelcast cluster is borked, so return empty set", ote);
+    }
+
+    return users;
+  }
+
+  /**
+   * Iterates the users with the given first name, ordered by id, fetching
+   * {@code batchSize} users per round trip as the iterator advances.
+   */
+  public Iterator<User> streamUsersByFirstName(final String firstName,
+      final int batchSize) {
+    log.info("Streaming users with firtname {}.", firstName);
+    return new PagingIterator<>(usersMap, firstNamePagingPredicate(firstName,
+        batchSize));
+  }
+
+  /**
+   * Returns hits, misses and size of the near cache, or {@code null} when
+   * the worker has none.
+   */
+  public NearCacheStats getNearCacheStats() {
+    return usersMap.getLocalMapStats().getNearCacheStats();
+  }
+
   public void destroy() {
 
     log.info("Shutting down Hazelcast client [{}]..", hcInstance.getName());
@@ -84,11 +162,22 @@ public class HazelcastWorker {
   }
 
   // private API
-  private ClientConfig getConfig() {
+  private PagingPredicate firstNamePagingPredicate(final String firstName,
+      final int pageSize) {
+    return new PagingPredicate(Predicates.equal(User.FIRST_NAME_NORMALIZED,
+        User.normalize(firstName)), new UserKeyComparator(), pageSize);
+  }
+
+  private ClientConfig getConfig(final String datastore,
+      final NearCacheConfig nearCacheConfig) {
     final ClientConfig clientConfig = new ClientConfig();
     clientConfig.setGroupConfig(new GroupConfig(Constants.HC_GROUP_NAME,
         Constants.HC_GROUP_PASSWORD));
     clientConfig.setClassLoader(getClass().getClassLoader());
+    if (nearCacheConfig != null) {
+      clientConfig.addNearCacheConfig(new NearCacheConfig(nearCacheConfig)
+          .setName(datastore));
+    }
 
     return clientConfig;
   }
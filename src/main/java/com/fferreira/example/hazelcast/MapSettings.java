@@ -0,0 +1,304 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast;
+
+import com.fferreira.example.hazelcast.mapstore.HazelcastMapStore;
+import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.MapStoreConfig;
+import com.hazelcast.config.MaxSizeConfig;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Tunable settings of a persisted map, read from properties such as:
+ *
+ * <pre>
+ * map.default.write-delay-seconds=1
+ * map.default.write-batch-size=500
+ * map.postgres-map-store.write-coalescing=true
+ * </pre>
+ *
+ * Keys under {@code map.default.} apply to every map and keys under
+ * {@code map.<map name>.} override them for a single map. Supported keys are
+ * write-delay-seconds, write-batch-size, write-coalescing, initial-load-mode,
+ * backup-count, async-backup-count, in-memory-format, eviction-policy,
+ * max-size, max-size-policy, load-threads, load-batch-size, write-buffer-size,
+ * write-buffer-flush-millis and staging; values of enums use the Hazelcast
+ * constant names.
+ */
+public class MapSettings {
+
+  /**
+   * System property naming the settings file, otherwise
+   * {@link #DEFAULT_RESOURCE} is looked up on the class path.
+   */
+  public static final String CONFIG_PROPERTY = "hazelcast.mapstore.config";
+  public static final String DEFAULT_RESOURCE = "mapstore.properties";
+
+  static final String PREFIX = "map.";
+  static final String DEFAULT_MAP = "default";
+
+  private int writeDelaySeconds = 1;
+  private int writeBatchSize = MapStoreConfig.DEFAULT_WRITE_BATCH_SIZE;
+  private boolean writeCoalescing = MapStoreConfig.DEFAULT_WRITE_COALESCING;
+  private MapStoreConfig.InitialLoadMode initialLoadMode =
+      MapStoreConfig.InitialLoadMode.LAZY;
+  private int backupCount = MapConfig.DEFAULT_BACKUP_COUNT;
+  private int asyncBackupCount = MapConfig.MIN_BACKUP_COUNT;
+  private InMemoryFormat inMemoryFormat = MapConfig.DEFAULT_IN_MEMORY_FORMAT;
+  private EvictionPolicy evictionPolicy = MapConfig.DEFAULT_EVICTION_POLICY;
+  private int maxSize = MaxSizeConfig.DEFAULT_MAX_SIZE;
+  private MaxSizeConfig.MaxSizePolicy maxSizePolicy =
+      MaxSizeConfig.MaxSizePolicy.PER_NODE;
+  private int loadThreads;
+  private int loadBatchSize = HazelcastMapStore.DEFAULT_LOAD_BATCH_SIZE;
+  private int writeBufferSize;
+  private long writeBufferFlushMillis = 1000;
+  private boolean staging;
+
+  /**
+   * Loads the settings of the given map from the file named by
+   * {@link #CONFIG_PROPERTY}, or from {@link #DEFAULT_RESOURCE}, falling back
+   * to the defaults when neither exists.
+   */
+  public static MapSettings load(final String mapName) {
+    return fromProperties(loadProperties(), mapName);
+  }
+
+  public static MapSettings fromProperties(final Properties props,
+      final String mapName) {
+    final MapSettings settings = new MapSettings();
+    settings.apply(props, PREFIX + DEFAULT_MAP + ".");
+    settings.apply(props, PREFIX + mapName + ".");
+    return settings;
+  }
+
+  static Properties loadProperties() {
+    final Properties props = new Properties();
+    final String file = System.getProperty(CONFIG_PROPERTY);
+    try (InputStream in = file != null ? new FileInputStream(file)
+        : MapSettings.class.getClassLoader().getResourceAsStream(
+            DEFAULT_RESOURCE)) {
+      if (in != null) {
+        props.load(in);
+      }
+    } catch (IOException ex) {
+      throw new IllegalStateException("Unable to read map settings", ex);
+    }
+    return props;
+  }
+
+  /**
+   * Copies these settings to the given map and map store configurations.
+   */
+  public void applyTo(final MapConfig mapCfg,
+      final MapStoreConfig mapStoreCfg) {
+    mapStoreCfg.setWriteDelaySeconds(writeDelaySeconds);
+    mapStoreCfg.setWriteBatchSize(writeBatchSize);
+    mapStoreCfg.setWriteCoalescing(writeCoalescing);
+    mapStoreCfg.setInitialLoadMode(initialLoadMode);
+    mapCfg.setBackupCount(backupCount);
+    mapCfg.setAsyncBackupCount(asyncBackupCount);
+    mapCfg.setInMemoryFormat(inMemoryFormat);
+    mapCfg.setEvictionPolicy(evictionPolicy);
+    mapCfg.setMaxSizeConfig(new MaxSizeConfig(maxSize, maxSizePolicy));
+  }
+
+  // private API
+  private void apply(final Properties props, final String prefix) {
+    String value;
+    if ((value = props.getProperty(prefix + "write-delay-seconds")) != null) {
+      writeDelaySeconds = Integer.parseInt(value.trim());
+    }
+    if ((value = props.getProperty(prefix + "write-batch-size")) != null) {
+      writeBatchSize = Integer.parseInt(value.trim());
+    }
+    if ((value = props.getProperty(prefix + "write-coalescing")) != null) {
+      writeCoalescing = Boolean.parseBoolean(value.trim());
+    }
+    if ((value = props.getProperty(prefix + "initial-load-mode")) != null) {
+      initialLoadMode = MapStoreConfig.InitialLoadMode.valueOf(value.trim());
+    }
+    if ((value = props.getProperty(prefix + "backup-count")) != null) {
+      backupCount = Integer.parseInt(value.trim());
+    }
+    if ((value = props.getProperty(prefix + "async-backup-count")) != null) {
+      asyncBackupCount = Integer.parseInt(value.trim());
+    }
+    if ((value = props.getProperty(prefix + "in-memory-format")) != null) {
+      inMemoryFormat = InMemoryFormat.valueOf(value.trim());
+    }
+    if ((value = props.getProperty(prefix + "eviction-policy")) != null) {
+      evictionPolicy = EvictionPolicy.valueOf(value.trim());
+    }
+    if ((value = props.getProperty(prefix + "max-size")) != null) {
+      maxSize = Integer.parseInt(value.trim());
+    }
+    if ((value = props.getProperty(prefix + "max-size-policy")) != null) {
+      maxSizePolicy = MaxSizeConfig.MaxSizePolicy.valueOf(value.trim());
+    }
+    if ((value = props.getProperty(prefix + "load-threads")) != null) {
+      loadThreads = Integer.parseInt(value.trim());
+    }
+    if ((value = props.getProperty(prefix + "load-batch-size")) != null) {
+      loadBatchSize = Integer.parseInt(value.trim());
+    }
+    if ((value = props.getProperty(prefix + "write-buffer-size")) != null) {
+      writeBufferSize = Integer.parseInt(value.trim());
+    }
+    if ((value = props.getProperty(prefix + "write-buffer-flush-millis"))
+        != null) {
+      writeBufferFlushMillis = Long.parseLong(value.trim());
+    }
+    if ((value = props.getProperty(prefix + "staging")) != null) {
+      staging = Boolean.parseBoolean(value.trim());
+    }
+  }
+
+  public int getWriteDelaySeconds() {
+    return writeDelaySeconds;
+  }
+
+  public void setWriteDelaySeconds(int writeDelaySeconds) {
+    this.writeDelaySeconds = writeDelaySeconds;
+  }
+
+  public int getWriteBatchSize() {
+    return writeBatchSize;
+  }
+
+  public void setWriteBatchSize(int writeBatchSize) {
+    this.writeBatchSize = writeBatchSize;
+  }
+
+  public boolean isWriteCoalescing() {
+    return writeCoalescing;
+  }
+
+  public void setWriteCoalescing(boolean writeCoalescing) {
+    this.writeCoalescing = writeCoalescing;
+  }
+
+  public MapStoreConfig.InitialLoadMode getInitialLoadMode() {
+    return initialLoadMode;
+  }
+
+  public void setInitialLoadMode(
+      MapStoreConfig.InitialLoadMode initialLoadMode) {
+    this.initialLoadMode = initialLoadMode;
+  }
+
+  public int getBackupCount() {
+    return backupCount;
+  }
+
+  public void setBackupCount(int backupCount) {
+    this.backupCount = backupCount;
+  }
+
+  public int getAsyncBackupCount() {
+    return asyncBackupCount;
+  }
+
+  public void setAsyncBackupCount(int asyncBackupCount) {
+    this.asyncBackupCount = asyncBackupCount;
+  }
+
+  public InMemoryFormat getInMemoryFormat() {
+    return inMemoryFormat;
+  }
+
+  public void setInMemoryFormat(InMemoryFormat inMemoryFormat) {
+    this.inMemoryFormat = inMemoryFormat;
+  }
+
+  public EvictionPolicy getEvictionPolicy() {
+    return evictionPolicy;
+  }
+
+  public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+    this.evictionPolicy = evictionPolicy;
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public void setMaxSize(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  public MaxSizeConfig.MaxSizePolicy getMaxSizePolicy() {
+    return maxSizePolicy;
+  }
+
+  public void setMaxSizePolicy(MaxSizeConfig.MaxSizePolicy maxSizePolicy) {
+    this.maxSizePolicy = maxSizePolicy;
+  }
+
+  public int getLoadThreads() {
+    return loadThreads;
+  }
+
+  /**
+   * Number of threads a {@link HazelcastMapStore} spreads each loadAll call
+   * over. Zero, the default, loads on the partition thread.
+   */
+  public void setLoadThreads(int loadThreads) {
+    this.loadThreads = loadThreads;
+  }
+
+  public int getLoadBatchSize() {
+    return loadBatchSize;
+  }
+
+  public void setLoadBatchSize(int loadBatchSize) {
+    this.loadBatchSize = loadBatchSize;
+  }
+
+  public int getWriteBufferSize() {
+    return writeBufferSize;
+  }
+
+  /**
+   * Number of keys a {@link HazelcastMapStore} write buffer holds before
+   * flushing. Zero, the default, writes every call through to the DAO.
+   */
+  public void setWriteBufferSize(int writeBufferSize) {
+    this.writeBufferSize = writeBufferSize;
+  }
+
+  public long getWriteBufferFlushMillis() {
+    return writeBufferFlushMillis;
+  }
+
+  public void setWriteBufferFlushMillis(long writeBufferFlushMillis) {
+    this.writeBufferFlushMillis = writeBufferFlushMillis;
+  }
+
+  public boolean isStaging() {
+    return staging;
+  }
+
+  /**
+   * Stages write-behind batches in off-heap buffers when the DAO supports
+   * it, see {@link HazelcastMapStore#setStagingPool}.
+   */
+  public void setStaging(boolean staging) {
+    this.staging = staging;
+  }
+}
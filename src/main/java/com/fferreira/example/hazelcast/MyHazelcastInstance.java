@@ -12,10 +12,14 @@
  */
 package com.fferreira.example.hazelcast;
 
+import com.fferreira.example.hazelcast.mapstore.DirectBufferPool;
+import com.fferreira.example.hazelcast.mapstore.HazelcastMapStore;
+import com.fferreira.example.hazelcast.mapstore.HazelcastMapStoreFactory;
 import com.hazelcast.config.Config;
 import com.hazelcast.config.GroupConfig;
 import com.hazelcast.config.JoinConfig;
 import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.MapIndexConfig;
 import com.hazelcast.config.MapStoreConfig;
 import com.hazelcast.config.MulticastConfig;
 import com.hazelcast.config.NetworkConfig;
@@ -24,8 +28,15 @@ import com.hazelcast.config.TcpIpConfig;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.MapStore;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,13 +45,46 @@ public class MyHazelcastInstance {
   // members
   static final Logger log = LoggerFactory.getLogger(MyHazelcastInstance.class);
   private final String instanceName;
-  private final MapStore store;
-  private final String storeType;
+  private final MapStore<?, ?> store;
+  private final HazelcastMapStoreFactory factory;
+  private final Map<String, MapSettings> settings;
+  private final List<ExecutorService> loadExecutors =
+      new CopyOnWriteArrayList<>();
+  // off-heap buffers shared by the stores of every map
+  private final DirectBufferPool stagingPool = new DirectBufferPool();
 
   // public API
-  public MyHazelcastInstance(final MapStore store, final String storeType) {
+  public MyHazelcastInstance(final MapStore<?, ?> store,
+      final String storeType) {
+    this(store, storeType, MapSettings.load(storeType));
+  }
+
+  public MyHazelcastInstance(final MapStore<?, ?> store,
+      final String storeType, final MapSettings settings) {
+    this(store, null, Collections.singletonMap(storeType, settings));
+  }
+
+  /**
+   * Creates an instance persisting each of the given maps through a store
+   * of the factory, with the settings loaded for that map.
+   */
+  public MyHazelcastInstance(final HazelcastMapStoreFactory factory,
+      final String... mapNames) {
+    this(null, factory, loadSettings(mapNames));
+  }
+
+  private MyHazelcastInstance(final MapStore<?, ?> store,
+      final HazelcastMapStoreFactory factory,
+      final Map<String, MapSettings> settings) {
     this.store = store;
-    this.storeType = storeType;
+    this.factory = factory;
+    this.settings = settings;
+    if (factory != null) {
+      factory.setInitializer(this::configureStore);
+    } else if (store instanceof HazelcastMapStore) {
+      configureStore(settings.keySet().iterator().next(),
+          (HazelcastMapStore<?, ?>) store);
+    }
     log.info("Creating Hazelcast CEP instance..");
     instanceName = UUID.randomUUID().toString();
     Hazelcast.newHazelcastInstance(getConfig());
@@ -80,19 +124,79 @@ public class MyHazelcastInstance {
     // ssl
     netCfg.setSSLConfig(new SSLConfig().setEnabled(false));
 
-    // Adding mapstore
-    final MapConfig mapCfg = cfg.getMapConfig(storeType);
+    // Adding mapstores
+    settings.forEach((mapName, mapSettings) -> {
+      final MapConfig mapCfg = cfg.getMapConfig(mapName);
 
-    final MapStoreConfig mapStoreCfg = new MapStoreConfig();
-    mapStoreCfg.setImplementation(store);
-    mapStoreCfg.setWriteDelaySeconds(1);
-    // to load all map at same time
-    mapStoreCfg.setInitialLoadMode(MapStoreConfig.InitialLoadMode.EAGER);
-    mapCfg.setMapStoreConfig(mapStoreCfg);
-    cfg.addMapConfig(mapCfg);
+      final MapStoreConfig mapStoreCfg = new MapStoreConfig();
+      if (factory != null) {
+        // stores are created per map, on first use
+        mapStoreCfg.setFactoryImplementation(factory);
+      } else {
+        mapStoreCfg.setImplementation(store);
+      }
+      // write-behind, loading, backup and eviction tuning
+      mapSettings.applyTo(mapCfg, mapStoreCfg);
+      mapCfg.setMapStoreConfig(mapStoreCfg);
+      // index used to query users by first name
+      if (User.class.equals(valueClass(mapName))) {
+        mapCfg.addMapIndexConfig(new MapIndexConfig(
+            User.FIRST_NAME_NORMALIZED, false));
+      }
+      cfg.addMapConfig(mapCfg);
+    });
     return cfg;
   }
 
+  /**
+   * Applies the load pool, write buffer and staging settings of the map to
+   * one of our own map stores.
+   */
+  private void configureStore(final String mapName,
+      final HazelcastMapStore<?, ?> mapStore) {
+    final MapSettings mapSettings = settings.get(mapName);
+    if (mapSettings.getLoadThreads() > 0) {
+      // daemon threads, shut down with the instance
+      final ExecutorService loadExecutor = Executors.newFixedThreadPool(
+          mapSettings.getLoadThreads(), r -> {
+            final Thread thread = new Thread(r, "map-store-load-" + mapName);
+            thread.setDaemon(true);
+            return thread;
+          });
+      loadExecutors.add(loadExecutor);
+      mapStore.setLoadExecutor(loadExecutor);
+      mapStore.setLoadBatchSize(mapSettings.getLoadBatchSize());
+    }
+    if (mapSettings.getWriteBufferSize() > 0) {
+      mapStore.enableWriteBuffer(mapSettings.getWriteBufferSize(),
+          mapSettings.getWriteBufferFlushMillis());
+    }
+    if (mapSettings.isStaging()) {
+      mapStore.setStagingPool(stagingPool);
+    }
+  }
+
+  /**
+   * Returns the class of the values stored in the map, or null when the
+   * store does not tell.
+   */
+  private Class<?> valueClass(final String mapName) {
+    if (factory != null) {
+      return factory.getValueClass(mapName);
+    }
+    return store instanceof HazelcastMapStore
+        ? ((HazelcastMapStore<?, ?>) store).getValueClass() : null;
+  }
+
+  private static Map<String, MapSettings> loadSettings(
+      final String... mapNames) {
+    final Map<String, MapSettings> settings = new LinkedHashMap<>();
+    for (String mapName : mapNames) {
+      settings.put(mapName, MapSettings.load(mapName));
+    }
+    return settings;
+  }
+
   /**
    * Destroys currently allocated instance.
    */
@@ -104,6 +208,10 @@ public class MyHazelcastInstance {
     if (instance != null) {
       instance.shutdown();
     }
+    loadExecutors.stream().
+        forEach((loadExecutor) -> {
+          loadExecutor.shutdown();
+    });
   }
 
 }
@@ -0,0 +1,61 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast;
+
+import com.hazelcast.core.IMap;
+import com.hazelcast.query.PagingPredicate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates the values matching a {@link PagingPredicate}, pulling one page at
+ * a time from the cluster, so at most a page of values is held by the
+ * client.
+ */
+class PagingIterator<K, V> implements Iterator<V> {
+
+  private final IMap<K, V> map;
+  private final PagingPredicate predicate;
+  private Iterator<V> page = Collections.emptyIterator();
+  private boolean lastPage;
+  private boolean started;
+
+  PagingIterator(final IMap<K, V> map, final PagingPredicate predicate) {
+    this.map = map;
+    this.predicate = predicate;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!page.hasNext() && !lastPage) {
+      if (started) {
+        predicate.nextPage();
+      }
+      started = true;
+      final Collection<V> values = map.values(predicate);
+      lastPage = values.size() < predicate.getPageSize();
+      page = values.iterator();
+    }
+    return page.hasNext();
+  }
+
+  @Override
+  public V next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return page.next();
+  }
+}
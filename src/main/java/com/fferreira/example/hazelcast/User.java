@@ -12,11 +12,22 @@
  */
 package com.fferreira.example.hazelcast;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import java.io.Serializable;
+import java.util.Locale;
 import java.util.Objects;
 
+// rows written by earlier versions still carry the client side version
+@JsonIgnoreProperties({"version"})
 public class User implements Serializable {
 
+  /**
+   * Query attribute holding the lower cased first name, indexed by
+   * {@link MyHazelcastInstance}.
+   */
+  public static final String FIRST_NAME_NORMALIZED = "firstNameNormalized";
+
   private String firtName;
   private String lastName;
   private String country;
@@ -38,6 +49,19 @@ public class User implements Serializable {
     this.firtName = firtName;
   }
 
+  /**
+   * Returns the first name lower cased, so case insensitive lookups can use
+   * an equality index.
+   */
+  @JsonIgnore
+  public String getFirstNameNormalized() {
+    return normalize(firtName);
+  }
+
+  public static String normalize(String name) {
+    return name == null ? null : name.toLowerCase(Locale.ROOT);
+  }
+
   public String getLastName() {
     return lastName;
   }
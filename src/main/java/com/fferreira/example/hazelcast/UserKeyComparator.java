@@ -0,0 +1,35 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast;
+
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Orders users by key, giving paged queries a stable order. Runs on the
+ * members, hence serializable. Compares the raw entries a
+ * {@link com.hazelcast.query.PagingPredicate} sorts, whose keys are the
+ * String ids of the users map.
+ */
+@SuppressWarnings("rawtypes")
+public class UserKeyComparator implements Comparator<Map.Entry>,
+    Serializable {
+
+  private static final long serialVersionUID = 2817463158312474931L;
+
+  @Override
+  public int compare(Map.Entry e1, Map.Entry e2) {
+    return ((String) e1.getKey()).compareTo((String) e2.getKey());
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Helpers to split bulk operations into fixed size chunks.
+ */
+public final class Batches {
+
+  private Batches() {
+  }
+
+  public static <T> List<List<T>> partition(final Collection<T> items,
+      final int size) {
+    final List<List<T>> chunks = new ArrayList<>();
+    List<T> chunk = new ArrayList<>(Math.min(size, items.size()));
+    for (T item : items) {
+      chunk.add(item);
+      if (chunk.size() == size) {
+        chunks.add(chunk);
+        chunk = new ArrayList<>(size);
+      }
+    }
+    if (!chunk.isEmpty()) {
+      chunks.add(chunk);
+    }
+    return chunks;
+  }
+}
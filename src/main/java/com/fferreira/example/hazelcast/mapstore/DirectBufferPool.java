@@ -0,0 +1,121 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of direct, off-heap buffers of a fixed chunk size, shared by the
+ * {@link StagedBatch batches} of any number of map stores. Buffers larger
+ * than a chunk, needed by oversized entries, are allocated on demand and
+ * never pooled. Once the direct buffers handed out and pooled add up to
+ * {@code maxDirectBytes}, staging goes on in heap buffers, so concurrent
+ * batches can never exhaust the direct memory of the JVM.
+ */
+public class DirectBufferPool {
+
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+  public static final int DEFAULT_MAX_POOLED = 16;
+  public static final long DEFAULT_MAX_DIRECT_BYTES = 64L * DEFAULT_CHUNK_SIZE;
+
+  private final int chunkSize;
+  private final int maxPooled;
+  private final long maxDirectBytes;
+  private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pooled = new AtomicInteger();
+  private final AtomicLong directBytes = new AtomicLong();
+
+  public DirectBufferPool() {
+    this(DEFAULT_CHUNK_SIZE, DEFAULT_MAX_POOLED);
+  }
+
+  public DirectBufferPool(final int chunkSize, final int maxPooled) {
+    this(chunkSize, maxPooled, DEFAULT_MAX_DIRECT_BYTES);
+  }
+
+  /**
+   * @param chunkSize size of every pooled buffer
+   * @param maxPooled number of idle buffers kept for reuse
+   * @param maxDirectBytes direct memory held at most by the pool and its
+   * buffers in use
+   */
+  public DirectBufferPool(final int chunkSize, final int maxPooled,
+      final long maxDirectBytes) {
+    this.chunkSize = chunkSize;
+    this.maxPooled = maxPooled;
+    this.maxDirectBytes = maxDirectBytes;
+  }
+
+  /**
+   * Returns a cleared buffer of at least {@code minCapacity} bytes.
+   */
+  public ByteBuffer acquire(final int minCapacity) {
+    if (minCapacity <= chunkSize) {
+      final ByteBuffer buffer = free.poll();
+      if (buffer != null) {
+        pooled.decrementAndGet();
+        return buffer;
+      }
+    }
+    final int capacity = Math.max(minCapacity, chunkSize);
+    return reserve(capacity) ? ByteBuffer.allocateDirect(capacity)
+        : ByteBuffer.allocate(capacity);
+  }
+
+  public void release(final ByteBuffer buffer) {
+    if (!buffer.isDirect()) {
+      return;
+    }
+    if (buffer.capacity() == chunkSize) {
+      if (pooled.incrementAndGet() <= maxPooled) {
+        buffer.clear();
+        free.offer(buffer);
+        return;
+      }
+      pooled.decrementAndGet();
+    }
+    // dropped, its memory goes back once the buffer is collected
+    directBytes.addAndGet(-buffer.capacity());
+  }
+
+  /**
+   * Returns the direct memory held by the pool and its buffers in use.
+   */
+  public long getDirectBytes() {
+    return directBytes.get();
+  }
+
+  public long getMaxDirectBytes() {
+    return maxDirectBytes;
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  // private API
+  private boolean reserve(final int capacity) {
+    long current;
+    do {
+      current = directBytes.get();
+      if (current + capacity > maxDirectBytes) {
+        return false;
+      }
+    } while (!directBytes.compareAndSet(current, current + capacity));
+    return true;
+  }
+}
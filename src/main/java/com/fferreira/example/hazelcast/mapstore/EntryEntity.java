@@ -16,7 +16,6 @@ import java.io.Serializable;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
-import javax.persistence.Version;
 
 /**
  * This entity represents an user file
@@ -30,19 +29,28 @@ public class EntryEntity implements Serializable {
   @Id
   private String id;
 
-  @Version
+  /**
+   * Version the message was written with, a row is only overwritten by a
+   * newer one.
+   */
   private Long version;
 
-  private String message;
+  private byte[] message;
 
   public EntryEntity() {
   }
 
-  public EntryEntity(String id, String message) {
+  public EntryEntity(String id, byte[] message) {
     this.id = id;
     this.message = message;
   }
-  
+
+  public EntryEntity(String id, byte[] message, Long version) {
+    this.id = id;
+    this.message = message;
+    this.version = version;
+  }
+
   public String getId() {
     return id;
   }
@@ -55,11 +63,15 @@ public class EntryEntity implements Serializable {
     return version;
   }
 
-  public String getMessage() {
+  public void setVersion(Long version) {
+    this.version = version;
+  }
+
+  public byte[] getMessage() {
     return message;
   }
 
-  public void setMessage(String message) {
+  public void setMessage(byte[] message) {
     this.message = message;
   }
 
@@ -15,15 +15,34 @@ package com.fferreira.example.hazelcast.mapstore;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface HazelcastDao<T extends Serializable> {
   void persist(T val);
 
-  void remove(String id);
+  void persistAll(Collection<T> vals);
+
+  /**
+   * Deletes the entry unless it was written with a newer version than the
+   * delete, versions being the ones of {@link Versioned#now()}.
+   */
+  void remove(String id, long version);
+
+  /**
+   * Deletes each id of the map with the version it is mapped to, see
+   * {@link #remove(String, long)}.
+   */
+  void removeAll(Map<String, Long> versions);
 
   T find(String id);
 
   List<T> findAll();
 
+  /**
+   * Returns the ids of all stored entries without loading their values. The
+   * result may be read lazily while it is iterated.
+   */
+  Iterable<String> findAllIds();
+
   List<T> findAll(Collection<String> ids);
 }
@@ -12,38 +12,94 @@
  */
 package com.fferreira.example.hazelcast.mapstore;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fferreira.example.hazelcast.mapstore.codec.JacksonCodec;
+import com.fferreira.example.hazelcast.mapstore.codec.KeyCodec;
+import com.fferreira.example.hazelcast.mapstore.codec.KeyCodecs;
+import com.fferreira.example.hazelcast.mapstore.codec.ValueCodec;
+import com.fferreira.example.hazelcast.mapstore.metrics.MapStoreMetrics;
+import com.fferreira.example.hazelcast.mapstore.metrics.MapStoreMetrics.Operation;
+import static com.fferreira.example.hazelcast.mapstore.metrics.MapStoreMetrics.Operation.DELETE;
+import static com.fferreira.example.hazelcast.mapstore.metrics.MapStoreMetrics.Operation.DELETE_ALL;
+import static com.fferreira.example.hazelcast.mapstore.metrics.MapStoreMetrics.Operation.FLUSH;
+import static com.fferreira.example.hazelcast.mapstore.metrics.MapStoreMetrics.Operation.LOAD;
+import static com.fferreira.example.hazelcast.mapstore.metrics.MapStoreMetrics.Operation.LOAD_ALL;
+import static com.fferreira.example.hazelcast.mapstore.metrics.MapStoreMetrics.Operation.LOAD_ALL_KEYS;
+import static com.fferreira.example.hazelcast.mapstore.metrics.MapStoreMetrics.Operation.STORE;
+import static com.fferreira.example.hazelcast.mapstore.metrics.MapStoreMetrics.Operation.STORE_ALL;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceAware;
+import com.hazelcast.core.MapLoaderLifecycleSupport;
 import com.hazelcast.core.MapStore;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class HazelcastMapStore<K extends Serializable, V extends Serializable>
-    implements MapStore<K, V> {
+    implements MapStore<K, V>, MapLoaderLifecycleSupport {
 
   static final Logger log = LoggerFactory.getLogger(HazelcastMapStore.class);
 
+  public static final int DEFAULT_LOAD_BATCH_SIZE = 1000;
+
   private HazelcastDao<EntryEntity> dao;
-  private final ObjectMapper mapper;
+  private KeyCodec<K> keyCodec;
+  private ValueCodec<V> codec;
+  private MapStoreMetrics metrics;
+  private boolean metricsSet;
+  private int traceSampling;
+  private Executor loadExecutor;
+  private int loadBatchSize = DEFAULT_LOAD_BATCH_SIZE;
+  private WriteBuffer writeBuffer;
+  private int writeBufferSize;
+  private ScheduledExecutorService flushScheduler;
+  private DirectBufferPool stagingPool;
+  private final Object flushLock = new Object();
 
   private Class<K> keyClass;
   private Class<V> valueClass;
 
+  /**
+   * Creates a store writing values as JSON.
+   */
   public HazelcastMapStore(Class<K> keyClass, Class<V> valueClass) {
-    mapper = new ObjectMapper();
-    mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+    this(keyClass, valueClass, JacksonCodec.json(valueClass));
+  }
+
+  public HazelcastMapStore(Class<K> keyClass, Class<V> valueClass,
+      ValueCodec<V> codec) {
     this.keyClass = keyClass;
+    this.keyCodec = KeyCodecs.forClass(keyClass);
     this.valueClass = valueClass;
+    this.codec = codec;
+    this.metrics = new MapStoreMetrics(new MetricRegistry(),
+        MetricRegistry.name(HazelcastMapStore.class));
+  }
+
+  /**
+   * Name the metrics of the store of a map are registered under.
+   */
+  public static String metricsName(String mapName) {
+    return MetricRegistry.name(HazelcastMapStore.class, mapName);
   }
 
   public HazelcastMapStore(Class<K> keyClass, Class<V> valueClass,
@@ -52,108 +108,512 @@ public class HazelcastMapStore<K extends Serializable, V extends Serializable>
     this.dao = dao;
   }
 
+  public HazelcastMapStore(Class<K> keyClass, Class<V> valueClass,
+      HazelcastDao<EntryEntity> dao, ValueCodec<V> codec) {
+    this(keyClass, valueClass, codec);
+    this.dao = dao;
+  }
+
   @Override
   public void store(final K key, final V value) {
-    log.info("Storing key " + key + " with value " + value);
+    trace(STORE, key);
+    final Timer.Context call = metrics.call(STORE, 1);
     try {
-      dao.persist(new EntryEntity(keyToJson(key), mapper
-          .writeValueAsString(value)));
-    } catch (JsonProcessingException ex) {
-      log.error("Error parsing given object " + value, ex);
+      final String id = encodeKey(key);
+      if (id == null) {
+        // already logged, skipped like a value failing to serialize
+        metrics.error(STORE);
+        return;
+      }
+      final byte[] bytes = encodeValue(STORE, value);
+      if (bytes != null) {
+        final EntryEntity entry = new EntryEntity(id, bytes, Versioned.now());
+        if (writeBuffer != null) {
+          flushIfFull(writeBuffer.store(entry));
+        } else {
+          final Timer.Context daoCall = metrics.dao(STORE);
+          try {
+            dao.persist(entry);
+          } finally {
+            daoCall.stop();
+          }
+        }
+      }
+    } catch (RuntimeException ex) {
+      metrics.error(STORE);
+      throw ex;
+    } finally {
+      call.stop();
     }
   }
 
+  /**
+   * With a staging pool, no write buffer and a {@link StagingDao}, entries
+   * are serialized straight into off-heap buffers handed to the DAO instead
+   * of one {@link EntryEntity} per entry.
+   */
   @Override
   public void storeAll(final  Map<K, V> map) {
-    map.entrySet().stream().
-        forEach((entrySet) -> {
-          store(entrySet.getKey(), entrySet.getValue());
-    });
+    if (log.isDebugEnabled()) {
+      log.debug("Storing {} entries", map.size());
+    }
+    if (stagingPool != null && writeBuffer == null
+        && dao instanceof StagingDao) {
+      storeAllStaged(map);
+      return;
+    }
+    final Timer.Context call = metrics.call(STORE_ALL, map.size());
+    try {
+      final List<EntryEntity> entries = new ArrayList<>(map.size());
+      map.entrySet().stream().
+          forEach((entrySet) -> {
+            final String id = encodeKey(entrySet.getKey());
+            if (id == null) {
+              metrics.error(STORE_ALL);
+              return;
+            }
+            final byte[] bytes = encodeValue(STORE_ALL, entrySet.getValue());
+            if (bytes != null) {
+              entries.add(new EntryEntity(id, bytes, Versioned.now()));
+            }
+      });
+      if (writeBuffer != null) {
+        entries.stream().
+            forEach((entry) -> {
+              writeBuffer.store(entry);
+        });
+        flushIfFull(writeBuffer.size());
+      } else {
+        final Timer.Context daoCall = metrics.dao(STORE_ALL);
+        try {
+          dao.persistAll(entries);
+        } finally {
+          daoCall.stop();
+        }
+      }
+    } catch (RuntimeException ex) {
+      metrics.error(STORE_ALL);
+      throw ex;
+    } finally {
+      call.stop();
+    }
   }
 
   @Override
   public void delete(final K key) {
-    log.info("Deleting key " + key);
-    dao.remove(keyToJson(key));
+    trace(DELETE, key);
+    final Timer.Context call = metrics.call(DELETE, 1);
+    try {
+      final String id = encodeKey(key);
+      if (id == null) {
+        metrics.error(DELETE);
+        return;
+      }
+      final long version = Versioned.now();
+      if (writeBuffer != null) {
+        flushIfFull(writeBuffer.delete(id, version));
+      } else {
+        final Timer.Context daoCall = metrics.dao(DELETE);
+        try {
+          dao.remove(id, version);
+        } finally {
+          daoCall.stop();
+        }
+      }
+    } catch (RuntimeException ex) {
+      metrics.error(DELETE);
+      throw ex;
+    } finally {
+      call.stop();
+    }
   }
 
   @Override
   public void deleteAll(final Collection<K> keys) {
-    keys.stream().
-        forEach((key) -> {
-          delete(key);
-    });
+    if (log.isDebugEnabled()) {
+      log.debug("Deleting {} keys", keys.size());
+    }
+    final Timer.Context call = metrics.call(DELETE_ALL, keys.size());
+    try {
+      // the keys are deleted together, with a single version
+      final long version = Versioned.now();
+      final Map<String, Long> versions = new LinkedHashMap<>();
+      keys.stream().
+          forEach((key) -> {
+            final String id = encodeKey(key);
+            if (id == null) {
+              metrics.error(DELETE_ALL);
+              return;
+            }
+            versions.put(id, version);
+      });
+      if (writeBuffer != null) {
+        versions.keySet().stream().
+            forEach((id) -> {
+              writeBuffer.delete(id, version);
+        });
+        flushIfFull(writeBuffer.size());
+      } else {
+        final Timer.Context daoCall = metrics.dao(DELETE_ALL);
+        try {
+          dao.removeAll(versions);
+        } finally {
+          daoCall.stop();
+        }
+      }
+    } catch (RuntimeException ex) {
+      metrics.error(DELETE_ALL);
+      throw ex;
+    } finally {
+      call.stop();
+    }
   }
 
   @Override
   public V load(final K key) {
-    log.info("Loading");
-    final EntryEntity entry = dao.find(keyToJson(key));
-    return entry == null ? null : valueFromJson(entry.getMessage());
+    trace(LOAD, key);
+    final Timer.Context call = metrics.call(LOAD, 1);
+    try {
+      if (writeBuffer != null) {
+        final EntryEntity buffered = writeBuffer.get(encodeKey(key));
+        if (buffered != null) {
+          return WriteBuffer.isDeleted(buffered) ? null : decodeValue(LOAD,
+              buffered.getMessage());
+        }
+      }
+      final EntryEntity entry;
+      final Timer.Context daoCall = metrics.dao(LOAD);
+      try {
+        entry = dao.find(encodeKey(key));
+      } finally {
+        daoCall.stop();
+      }
+      return entry == null ? null : decodeValue(LOAD, entry.getMessage());
+    } catch (RuntimeException ex) {
+      metrics.error(LOAD);
+      throw ex;
+    } finally {
+      call.stop();
+    }
   }
 
+  /**
+   * Without a load executor, or for at most {@link #loadBatchSize} keys, the
+   * keys are read and decoded on the calling thread. Otherwise they are split
+   * in batches fetched and decoded concurrently on the load executor. Keys
+   * with a buffered write are answered from the write buffer.
+   */
   @Override
   public Map<K, V> loadAll(final Collection<K> keys) {
-    log.info("Loading All");
+    if (log.isDebugEnabled()) {
+      log.debug("Loading {} keys", keys.size());
+    }
+    final Timer.Context call = metrics.call(LOAD_ALL, keys.size());
+    try {
+      final Map<K, V> map = new HashMap<>();
+      final List<String> ids = new ArrayList<>(keys.size());
+      keys.stream().
+          forEach((key) -> {
+            final String id = encodeKey(key);
+            final EntryEntity buffered = writeBuffer == null ? null
+                : writeBuffer.get(id);
+            if (buffered == null) {
+              ids.add(id);
+            } else if (!WriteBuffer.isDeleted(buffered)) {
+              map.put(key, decodeValue(LOAD_ALL, buffered.getMessage()));
+            }
+      });
+      if (ids.isEmpty()) {
+        return map;
+      }
+      if (loadExecutor == null || ids.size() <= loadBatchSize) {
+        map.putAll(loadBatch(ids));
+        return map;
+      }
+      final List<CompletableFuture<Map<K, V>>> futures = Batches.partition(
+          ids, loadBatchSize).stream()//
+          .map(batch -> CompletableFuture.supplyAsync(() -> loadBatch(batch),
+              loadExecutor))//
+          .collect(Collectors.toList());
+      try {
+        futures.stream().
+            forEach((future) -> {
+              map.putAll(future.join());
+        });
+      } catch (CompletionException ex) {
+        if (ex.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) ex.getCause();
+        }
+        throw ex;
+      }
+      return map;
+    } catch (RuntimeException ex) {
+      metrics.error(LOAD_ALL);
+      throw ex;
+    } finally {
+      call.stop();
+    }
+  }
+
+  /**
+   * Keys are deserialized lazily while Hazelcast iterates them, so the whole
+   * key set is never held in memory by the store. Metrics only cover the
+   * call opening the stream. Buffered writes are flushed first.
+   */
+  @Override
+  public Iterable<K> loadAllKeys() {
+    flush();
+    final Iterable<String> ids;
+    final Timer.Context call = metrics.call(LOAD_ALL_KEYS, 0);
+    final Timer.Context daoCall = metrics.dao(LOAD_ALL_KEYS);
+    try {
+      ids = dao.findAllIds();
+    } catch (RuntimeException ex) {
+      metrics.error(LOAD_ALL_KEYS);
+      throw ex;
+    } finally {
+      daoCall.stop();
+      call.stop();
+    }
+    return () -> new KeyIterator(ids.iterator());
+  }
+
+  /**
+   * Lets codecs that depend on the member, such as the Hazelcast codec, use
+   * its configuration. Unless set explicitly, metrics are named after the
+   * map from now on.
+   */
+  @Override
+  public void init(final HazelcastInstance hazelcastInstance,
+      final Properties properties, final String mapName) {
+    if (!metricsSet) {
+      metrics = new MapStoreMetrics(new MetricRegistry(), metricsName(
+          mapName));
+    }
+    if (codec instanceof HazelcastInstanceAware) {
+      ((HazelcastInstanceAware) codec).setHazelcastInstance(
+          hazelcastInstance);
+    }
+  }
+
+  /**
+   * Stops the flush timer and writes whatever is still buffered.
+   */
+  @Override
+  public void destroy() {
+    if (flushScheduler != null) {
+      flushScheduler.shutdown();
+    }
+    flush();
+  }
+
+  /**
+   * Buffers writes in memory, coalescing repeated writes to the same key into
+   * the latest one, and hands them to the bulk DAO operations once
+   * {@code maxEntries} keys are pending or every {@code flushIntervalMillis}
+   * milliseconds when positive. Loads read the buffer before the DAO.
+   * Enabling it again only changes the limits, pending writes are kept.
+   */
+  public void enableWriteBuffer(final int maxEntries,
+      final long flushIntervalMillis) {
+    synchronized (flushLock) {
+      if (writeBuffer == null) {
+        writeBuffer = new WriteBuffer();
+      }
+      writeBufferSize = maxEntries;
+      if (flushScheduler != null) {
+        flushScheduler.shutdown();
+        flushScheduler = null;
+      }
+      if (flushIntervalMillis > 0) {
+        flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+          final Thread thread = new Thread(r, "map-store-flush");
+          thread.setDaemon(true);
+          return thread;
+        });
+        flushScheduler.scheduleWithFixedDelay(() -> {
+          try {
+            flush();
+          } catch (RuntimeException ex) {
+            log.error("Error flushing the write buffer", ex);
+          }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  /**
+   * Writes the buffered entries through {@link HazelcastDao#persistAll} and
+   * {@link HazelcastDao#removeAll}. On failure they go back to the buffer.
+   */
+  public void flush() {
+    if (writeBuffer == null) {
+      return;
+    }
+    synchronized (flushLock) {
+      final Map<String, EntryEntity> writes = writeBuffer.drain();
+      if (writes.isEmpty()) {
+        writeBuffer.completed();
+        return;
+      }
+      final Timer.Context call = metrics.call(FLUSH, writes.size());
+      try {
+        final List<EntryEntity> stores = new ArrayList<>(writes.size());
+        final Map<String, Long> deletes = new LinkedHashMap<>();
+        writes.forEach((id, value) -> {
+          if (WriteBuffer.isDeleted(value)) {
+            deletes.put(id, value.getVersion());
+          } else {
+            stores.add(value);
+          }
+        });
+        final Timer.Context daoCall = metrics.dao(FLUSH);
+        try {
+          if (!deletes.isEmpty()) {
+            dao.removeAll(deletes);
+          }
+          if (!stores.isEmpty()) {
+            dao.persistAll(stores);
+          }
+        } finally {
+          daoCall.stop();
+        }
+        writeBuffer.completed();
+      } catch (RuntimeException ex) {
+        writeBuffer.restore();
+        metrics.error(FLUSH);
+        throw ex;
+      } finally {
+        call.stop();
+      }
+    }
+  }
+
+  // private API
+  private void storeAllStaged(final Map<K, V> map) {
+    final Timer.Context call = metrics.call(STORE_ALL, map.size());
+    try (StagedBatch batch = new StagedBatch(stagingPool)) {
+      map.forEach((key, value) -> {
+        final String id = encodeKey(key);
+        if (id == null) {
+          // already logged, skipped like a value failing to serialize
+          metrics.error(STORE_ALL);
+          return;
+        }
+        final Timer.Context encode = metrics.encode();
+        try {
+          codec.encode(value, batch.message());
+          batch.add(id, Versioned.now());
+        } catch (IOException ex) {
+          batch.discard();
+          metrics.error(STORE_ALL);
+          log.error("Error serializing object of {}", valueClass, ex);
+        } finally {
+          encode.stop();
+        }
+      });
+      final Timer.Context daoCall = metrics.dao(STORE_ALL);
+      try {
+        ((StagingDao) dao).persistStaged(batch);
+      } finally {
+        daoCall.stop();
+      }
+    } catch (RuntimeException ex) {
+      metrics.error(STORE_ALL);
+      throw ex;
+    } finally {
+      call.stop();
+    }
+  }
+
+  private void flushIfFull(final int buffered) {
+    if (buffered >= writeBufferSize) {
+      flush();
+    }
+  }
+
+  private Map<K, V> loadBatch(final List<String> ids) {
+    final List<EntryEntity> entries;
+    final Timer.Context daoCall = metrics.dao(LOAD_ALL);
+    try {
+      entries = dao.findAll(ids);
+    } finally {
+      daoCall.stop();
+    }
     final Map<K, V> map = new HashMap<>();
-    dao.findAll(//
-        keys.stream()//
-            .map(it -> keyToJson(it))//
-            .collect(Collectors.toList())//
-        ).stream().
+    entries.stream().
         forEach((entry) -> {
-          map.put(keyFromJson(entry.getId()), valueFromJson(entry.getMessage()));
+          map.put(decodeKey(entry.getId()), decodeValue(LOAD_ALL, entry
+              .getMessage()));
     });
     return map;
   }
 
-  @Override
-  public Set<K> loadAllKeys() {
-    final List<EntryEntity> list = dao.findAll();
-    final Set<K> set = new HashSet<>();
-     list.stream().
-     forEach((item) -> {
-      set.add(keyFromJson(item.getId()));
-     });
-    return set;
+  /**
+   * Logs the key at TRACE level for about one in {@link #traceSampling}
+   * calls. Costs a single comparison while sampling is off.
+   */
+  private void trace(final Operation op, final K key) {
+    if (traceSampling > 0 && log.isTraceEnabled() && (traceSampling == 1
+        || ThreadLocalRandom.current().nextInt(traceSampling) == 0)) {
+      log.trace("{} key {}", op, key);
+    }
   }
 
-  private V valueFromJson(final String json) {
+  /**
+   * Encodes the value, returning null when the codec fails.
+   */
+  private byte[] encodeValue(final Operation op, final V value) {
+    final Timer.Context encode = metrics.encode();
+    try {
+      return codec.encode(value);
+    } catch (IOException ex) {
+      metrics.error(op);
+      log.error("Error serializing object of {}", valueClass, ex);
+    } finally {
+      encode.stop();
+    }
+    return null;
+  }
+
+  private V decodeValue(final Operation op, final byte[] bytes) {
 
+    final Timer.Context decode = metrics.decode();
     try {
-      return mapper.readValue(json, valueClass);
+      return codec.decode(bytes);
     } catch (IOException ex) {
-      log.error("Error deserializing object " + json, ex);
+      metrics.error(op);
+      log.error("Error deserializing object of {}", valueClass, ex);
+    } finally {
+      decode.stop();
     }
     return null;
   }
 
-  private K keyFromJson(final String json) {
-    K res = null;
-    if (keyClass.equals(String.class)) {
-      res = (K) json;
-    } else {
-      try {
-        res = mapper.readValue(json, keyClass);
-      } catch (IOException ex) {
-        log.error("Error deserializing object " + json, ex);
-      }
+  private K decodeKey(final String id) {
+    try {
+      return keyCodec.decode(id);
+    } catch (IOException ex) {
+      log.error("Error deserializing key {}", id, ex);
     }
-    return res;
+    return null;
   }
 
-  private String keyToJson(final K key) {
-    String res = null;
-    if (key.getClass().equals(String.class)) {
-      res = (String) key;
-    } else {
-      try {
-        res = mapper.writeValueAsString(key);
-      } catch (IOException ex) {
-        log.error("Error deserializing object " + key, ex);
-      }
+  private String encodeKey(final K key) {
+    try {
+      return keyCodec.encode(key);
+    } catch (IOException ex) {
+      log.error("Error serializing key {}", key, ex);
     }
-    return res;
+    return null;
+  }
+
+  public Class<K> getKeyClass() {
+    return keyClass;
+  }
+
+  public Class<V> getValueClass() {
+    return valueClass;
   }
 
   public HazelcastDao<EntryEntity> getDao() {
@@ -164,4 +624,114 @@ public class HazelcastMapStore<K extends Serializable, V extends Serializable>
     this.dao = dao;
   }
 
+  public MapStoreMetrics getMetrics() {
+    return metrics;
+  }
+
+  public void setMetrics(MapStoreMetrics metrics) {
+    this.metrics = metrics;
+    this.metricsSet = true;
+  }
+
+  public int getTraceSampling() {
+    return traceSampling;
+  }
+
+  /**
+   * Enables per key tracing of single entry operations, logged at TRACE
+   * level for one in {@code traceSampling} calls. Zero, the default, turns
+   * it off.
+   */
+  public void setTraceSampling(int traceSampling) {
+    this.traceSampling = traceSampling;
+  }
+
+  public Executor getLoadExecutor() {
+    return loadExecutor;
+  }
+
+  /**
+   * Sets the executor {@link #loadAll(Collection)} fans batches out to. The
+   * caller owns it; null, the default, loads on the calling thread.
+   */
+  public void setLoadExecutor(Executor loadExecutor) {
+    this.loadExecutor = loadExecutor;
+  }
+
+  public int getLoadBatchSize() {
+    return loadBatchSize;
+  }
+
+  public void setLoadBatchSize(int loadBatchSize) {
+    this.loadBatchSize = loadBatchSize;
+  }
+
+  public DirectBufferPool getStagingPool() {
+    return stagingPool;
+  }
+
+  /**
+   * Enables staging of {@link #storeAll(Map)} batches in buffers of the
+   * given pool, which may be shared by several stores. Null turns it off.
+   */
+  public void setStagingPool(DirectBufferPool stagingPool) {
+    this.stagingPool = stagingPool;
+  }
+
+  public KeyCodec<K> getKeyCodec() {
+    return keyCodec;
+  }
+
+  /**
+   * Replaces the codec picked from the key class, e.g. with a
+   * {@link com.fferreira.example.hazelcast.mapstore.codec.CompositeKeyCodec}.
+   */
+  public void setKeyCodec(KeyCodec<K> keyCodec) {
+    this.keyCodec = keyCodec;
+  }
+
+  public ValueCodec<V> getCodec() {
+    return codec;
+  }
+
+  public void setCodec(ValueCodec<V> codec) {
+    this.codec = codec;
+  }
+
+  /**
+   * Decodes the ids of the dao while Hazelcast reads the keys, and closes
+   * the dao scan, when it is closeable, once Hazelcast closes this iterator.
+   */
+  private class KeyIterator implements Iterator<K>, Closeable {
+
+    private final Iterator<String> ids;
+
+    KeyIterator(final Iterator<String> ids) {
+      this.ids = ids;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return ids.hasNext();
+    }
+
+    @Override
+    public K next() {
+      return decodeKey(ids.next());
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (ids instanceof AutoCloseable) {
+        try {
+          ((AutoCloseable) ids).close();
+        } catch (IOException | RuntimeException ex) {
+          throw ex;
+        } catch (Exception ex) {
+          throw new IOException(ex);
+        }
+      }
+    }
+  }
+
 }
@@ -0,0 +1,229 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fferreira.example.hazelcast.mapstore.codec.JacksonCodec;
+import com.fferreira.example.hazelcast.mapstore.codec.KeyCodec;
+import com.fferreira.example.hazelcast.mapstore.codec.KeyCodecs;
+import com.fferreira.example.hazelcast.mapstore.codec.ValueCodec;
+import com.fferreira.example.hazelcast.mapstore.metrics.MapStoreMetrics;
+import com.hazelcast.core.MapLoader;
+import com.hazelcast.core.MapStoreFactory;
+import java.io.Serializable;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates one {@link HazelcastMapStore} per registered map, each with its own
+ * key and value classes, codec and table. Stores, and through the DAO
+ * provider their tables and statements, are only created when Hazelcast
+ * first asks for the map store of a map. All stores record their metrics in
+ * one registry, each under the name of its map.
+ */
+public class HazelcastMapStoreFactory implements
+    MapStoreFactory<Object, Object> {
+
+  static final Logger log = LoggerFactory.getLogger(
+      HazelcastMapStoreFactory.class);
+
+  /**
+   * Table of the stores created without a factory, never given to a map.
+   */
+  public static final String DEFAULT_TABLE = "hzentry";
+
+  /**
+   * Longest table name Cassandra accepts, shorter than PostgreSQL's.
+   */
+  public static final int MAX_TABLE_NAME_LENGTH = 48;
+
+  /**
+   * Prepended to table names not starting with a letter, which neither
+   * database accepts as an unquoted identifier.
+   */
+  static final String TABLE_PREFIX = "map_";
+
+  /**
+   * Suffix of the PostgreSQL temporary staging tables, which would shadow a
+   * table of the same name.
+   */
+  static final String STAGING_SUFFIX = "_staging";
+
+  private final Function<String, HazelcastDao<EntryEntity>> daoProvider;
+  private final Map<String, Registration<?, ?>> registrations =
+      new ConcurrentHashMap<>();
+  private final Map<String, HazelcastMapStore<?, ?>> stores =
+      new ConcurrentHashMap<>();
+  private final MetricRegistry metricRegistry = new MetricRegistry();
+  private BiConsumer<String, HazelcastMapStore<?, ?>> initializer;
+
+  /**
+   * @param daoProvider creates the DAO of a table, given its name, e.g.
+   * {@code client::forTable}
+   */
+  public HazelcastMapStoreFactory(
+      Function<String, HazelcastDao<EntryEntity>> daoProvider) {
+    this.daoProvider = daoProvider;
+  }
+
+  /**
+   * Registers a map whose values are written as JSON.
+   */
+  public <K extends Serializable, V extends Serializable>
+      HazelcastMapStoreFactory register(String mapName, Class<K> keyClass,
+          Class<V> valueClass) {
+    return register(mapName, keyClass, valueClass, JacksonCodec.json(
+        valueClass));
+  }
+
+  public <K extends Serializable, V extends Serializable>
+      HazelcastMapStoreFactory register(String mapName, Class<K> keyClass,
+          Class<V> valueClass, ValueCodec<V> codec) {
+    return register(mapName, keyClass, valueClass, codec, KeyCodecs.forClass(
+        keyClass));
+  }
+
+  /**
+   * Registers a map whose keys are written with the given codec, e.g. a
+   * {@link com.fferreira.example.hazelcast.mapstore.codec.CompositeKeyCodec}.
+   *
+   * @throws IllegalArgumentException when the table of the map is reserved,
+   * too long or already used by another map
+   */
+  public synchronized <K extends Serializable, V extends Serializable>
+      HazelcastMapStoreFactory register(String mapName, Class<K> keyClass,
+          Class<V> valueClass, ValueCodec<V> codec, KeyCodec<K> keyCodec) {
+    final String table = tableName(mapName);
+    if (table.equals(DEFAULT_TABLE) || table.endsWith(STAGING_SUFFIX)) {
+      throw new IllegalArgumentException("Map " + mapName
+          + " would use the reserved table " + table);
+    }
+    if (table.length() > MAX_TABLE_NAME_LENGTH) {
+      throw new IllegalArgumentException("Table " + table + " of map "
+          + mapName + " is longer than " + MAX_TABLE_NAME_LENGTH
+          + " characters");
+    }
+    registrations.keySet().stream().
+        forEach((other) -> {
+          if (!other.equals(mapName) && tableName(other).equals(table)) {
+            throw new IllegalArgumentException("Maps " + other + " and "
+                + mapName + " would share table " + table);
+          }
+    });
+    registrations.put(mapName, new Registration<>(keyClass, valueClass,
+        codec, keyCodec));
+    return this;
+  }
+
+  /**
+   * Every store handles the key and value classes it was registered with,
+   * Hazelcast only hands it entries of its own map.
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public MapLoader<Object, Object> newMapStore(String mapName,
+      Properties properties) {
+    return (MapLoader<Object, Object>) stores.computeIfAbsent(mapName,
+        this::createStore);
+  }
+
+  /**
+   * Returns the store created for the map, or null when Hazelcast did not
+   * ask for it yet.
+   */
+  public HazelcastMapStore<?, ?> getStore(String mapName) {
+    return stores.get(mapName);
+  }
+
+  /**
+   * Returns the registry shared by the metrics of every store, e.g. to
+   * publish them all through one JMX reporter.
+   */
+  public MetricRegistry getMetricRegistry() {
+    return metricRegistry;
+  }
+
+  public Class<?> getValueClass(String mapName) {
+    final Registration<?, ?> registration = registrations.get(mapName);
+    return registration == null ? null : registration.valueClass;
+  }
+
+  /**
+   * Sets a callback run on every store right after it is created, before
+   * Hazelcast uses it.
+   */
+  public void setInitializer(
+      BiConsumer<String, HazelcastMapStore<?, ?>> initializer) {
+    this.initializer = initializer;
+  }
+
+  /**
+   * Table of a map: its name lower cased with every character that is not a
+   * letter, digit or underscore replaced by an underscore, prefixed by
+   * {@link #TABLE_PREFIX} unless it starts with a letter. Different names
+   * may give the same table, which {@code register} rejects.
+   */
+  public static String tableName(String mapName) {
+    final String table = mapName.toLowerCase(Locale.ROOT).replaceAll(
+        "[^a-z0-9_]", "_");
+    return table.matches("[a-z].*") ? table : TABLE_PREFIX + table;
+  }
+
+  // private API
+  private HazelcastMapStore<?, ?> createStore(final String mapName) {
+    final Registration<?, ?> registration = registrations.get(mapName);
+    if (registration == null) {
+      throw new IllegalArgumentException("No map store registered for map "
+          + mapName);
+    }
+    log.info("Creating map store for map {}", mapName);
+    final HazelcastMapStore<?, ?> store = registration.newStore(daoProvider
+        .apply(tableName(mapName)));
+    store.setMetrics(new MapStoreMetrics(metricRegistry, HazelcastMapStore
+        .metricsName(mapName)));
+    if (initializer != null) {
+      initializer.accept(mapName, store);
+    }
+    return store;
+  }
+
+  private static class Registration<K extends Serializable,
+      V extends Serializable> {
+
+    private final Class<K> keyClass;
+    private final Class<V> valueClass;
+    private final ValueCodec<V> codec;
+    private final KeyCodec<K> keyCodec;
+
+    Registration(Class<K> keyClass, Class<V> valueClass, ValueCodec<V> codec,
+        KeyCodec<K> keyCodec) {
+      this.keyClass = keyClass;
+      this.valueClass = valueClass;
+      this.codec = codec;
+      this.keyCodec = keyCodec;
+    }
+
+    HazelcastMapStore<K, V> newStore(HazelcastDao<EntryEntity> dao) {
+      final HazelcastMapStore<K, V> store = new HazelcastMapStore<>(keyClass,
+          valueClass, dao, codec);
+      store.setKeyCodec(keyCodec);
+      return store;
+    }
+  }
+}
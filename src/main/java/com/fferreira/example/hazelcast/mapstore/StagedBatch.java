@@ -0,0 +1,160 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entries of a store batch serialized into pooled off-heap buffers. Every
+ * entry is laid out as a PostgreSQL binary COPY tuple of (id, version,
+ * message):
+ *
+ * <pre>
+ * int16 field count (3)
+ * int32 id length, id UTF-8 bytes
+ * int32 8, int64 version
+ * int32 message length, message bytes
+ * </pre>
+ *
+ * so Postgres can stream the buffers unchanged, while Cassandra binds slices
+ * of them. An entry never spans two buffers. Buffers go back to the pool on
+ * {@link #close()}.
+ */
+public class StagedBatch implements AutoCloseable {
+
+  static final short FIELD_COUNT = 3;
+  static final int VERSION_LENGTH = 8;
+  static final int HEADER_LENGTH = 2 + 4 + 4 + VERSION_LENGTH + 4;
+
+  /**
+   * Receives the fields of one entry as read-only slices of the buffers.
+   */
+  public interface EntryConsumer {
+
+    void accept(ByteBuffer id, ByteBuffer version, ByteBuffer message);
+  }
+
+  private final DirectBufferPool pool;
+  private final List<ByteBuffer> buffers = new ArrayList<>();
+  private final Scratch scratch = new Scratch();
+  private ByteBuffer current;
+  private int size;
+
+  public StagedBatch(final DirectBufferPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Stream the message of the next entry is written to, reused by every
+   * entry of the batch.
+   */
+  public OutputStream message() {
+    return scratch;
+  }
+
+  /**
+   * Appends an entry holding the message written to {@link #message()}
+   * since the previous entry.
+   */
+  public void add(final String id, final long version) {
+    final byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+    final int length = HEADER_LENGTH + idBytes.length + scratch.size();
+    if (current == null || current.remaining() < length) {
+      current = pool.acquire(length);
+      buffers.add(current);
+    }
+    current.putShort(FIELD_COUNT);
+    current.putInt(idBytes.length).put(idBytes);
+    current.putInt(VERSION_LENGTH).putLong(version);
+    current.putInt(scratch.size()).put(scratch.buffer(), 0, scratch.size());
+    scratch.reset();
+    size++;
+  }
+
+  /**
+   * Drops whatever was written to {@link #message()} for the next entry.
+   */
+  public void discard() {
+    scratch.reset();
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns read-only views of the written part of every buffer, in order.
+   */
+  public List<ByteBuffer> buffers() {
+    final List<ByteBuffer> views = new ArrayList<>(buffers.size());
+    buffers.stream().
+        forEach((buffer) -> {
+          final ByteBuffer view = buffer.asReadOnlyBuffer();
+          view.flip();
+          views.add(view);
+    });
+    return views;
+  }
+
+  public void forEach(final EntryConsumer consumer) {
+    buffers().stream().
+        forEach((view) -> {
+          while (view.hasRemaining()) {
+            view.getShort();
+            final ByteBuffer id = field(view);
+            final ByteBuffer version = field(view);
+            final ByteBuffer message = field(view);
+            consumer.accept(id, version, message);
+          }
+    });
+  }
+
+  @Override
+  public void close() {
+    buffers.stream().
+        forEach((buffer) -> {
+          pool.release(buffer);
+    });
+    buffers.clear();
+    current = null;
+  }
+
+  // private API
+  private static ByteBuffer field(final ByteBuffer view) {
+    final int length = view.getInt();
+    final ByteBuffer field = view.slice();
+    field.limit(length);
+    view.position(view.position() + length);
+    return field;
+  }
+
+  /**
+   * Growable heap buffer exposing its array, so messages are copied to the
+   * off-heap buffer without an intermediate byte[] per entry.
+   */
+  private static class Scratch extends ByteArrayOutputStream {
+
+    Scratch() {
+      super(4096);
+    }
+
+    byte[] buffer() {
+      return buf;
+    }
+  }
+}
@@ -0,0 +1,26 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore;
+
+/**
+ * Implemented by DAOs able to write a {@link StagedBatch} straight from its
+ * off-heap buffers, without an {@link EntryEntity} per entry.
+ */
+public interface StagingDao {
+
+  /**
+   * Inserts or updates every entry of the batch, keeping the row of an id
+   * when it already holds a newer version.
+   */
+  void persistStaged(StagedBatch batch);
+}
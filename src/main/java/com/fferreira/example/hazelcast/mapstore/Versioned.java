@@ -0,0 +1,46 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Clock versioning every write and delete of the map stores. The DAOs only
+ * let a write replace a row holding an older version, and a delete only
+ * removes older rows, so a late write-behind flush cannot overwrite a newer
+ * value.
+ *
+ * Versions are taken by the map store on the member when Hazelcast hands it
+ * the write, never by clients, so puts and deletes of a key are ordered by
+ * the same clock whatever the client did to the value.
+ */
+public final class Versioned {
+
+  private static final AtomicLong last = new AtomicLong();
+
+  private Versioned() {
+  }
+
+  /**
+   * Current time in microseconds since the epoch, the unit Cassandra uses
+   * for write timestamps, moved forward by one whenever it would repeat or
+   * go back. Successive calls therefore always return increasing values, so
+   * back to back updates of a key are never mistaken for the same version.
+   */
+  public static long now() {
+    final Instant now = Instant.now();
+    final long micros = now.getEpochSecond() * 1000000 + now.getNano() / 1000;
+    return last.updateAndGet((prev) -> Math.max(prev + 1, micros));
+  }
+}
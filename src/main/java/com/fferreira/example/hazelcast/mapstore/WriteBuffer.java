@@ -0,0 +1,88 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pending writes of a map store keyed by entry id, where a later write to an
+ * id replaces the earlier one: repeated stores keep the latest entry and a
+ * delete drops any pending store of the same id. A pending delete is held as
+ * an entry without message carrying the version of the delete.
+ *
+ * Entries drained for a flush stay visible to {@link #get(String)} until the
+ * flush is {@link #completed() completed} or {@link #restore() restored}, so
+ * readers never fall through to a store that has not been written yet.
+ */
+class WriteBuffer {
+
+  private Map<String, EntryEntity> pending = new LinkedHashMap<>();
+  private Map<String, EntryEntity> flushing = Collections.emptyMap();
+
+  /**
+   * Buffers the entry, returning the number of pending writes.
+   */
+  synchronized int store(final EntryEntity entry) {
+    pending.put(entry.getId(), entry);
+    return pending.size();
+  }
+
+  synchronized int delete(final String id, final long version) {
+    pending.put(id, new EntryEntity(id, null, version));
+    return pending.size();
+  }
+
+  /**
+   * Returns the buffered entry of the id, a {@link #isDeleted(EntryEntity)
+   * delete} or null when nothing is buffered.
+   */
+  synchronized EntryEntity get(final String id) {
+    final EntryEntity value = pending.get(id);
+    return value != null ? value : flushing.get(id);
+  }
+
+  static boolean isDeleted(final EntryEntity entry) {
+    return entry.getMessage() == null;
+  }
+
+  synchronized int size() {
+    return pending.size();
+  }
+
+  /**
+   * Hands out the pending writes for a flush. Flushes must not overlap, the
+   * previous one has to be completed or restored first.
+   */
+  synchronized Map<String, EntryEntity> drain() {
+    flushing = pending;
+    pending = new LinkedHashMap<>();
+    return flushing;
+  }
+
+  synchronized void completed() {
+    flushing = Collections.emptyMap();
+  }
+
+  /**
+   * Puts the writes of a failed flush back, unless a newer write to the same
+   * id arrived meanwhile.
+   */
+  synchronized void restore() {
+    final Map<String, EntryEntity> merged = new LinkedHashMap<>(flushing);
+    merged.putAll(pending);
+    pending = merged;
+    flushing = Collections.emptyMap();
+  }
+}
@@ -12,28 +12,75 @@
  */
 package com.fferreira.example.hazelcast.mapstore.cassandra;
 
+import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.Metadata;
-import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
-import com.fferreira.example.hazelcast.Constants;
 import com.fferreira.example.hazelcast.mapstore.EntryEntity;
 import com.fferreira.example.hazelcast.mapstore.HazelcastDao;
+import com.fferreira.example.hazelcast.mapstore.StagedBatch;
+import com.fferreira.example.hazelcast.mapstore.StagingDao;
+import static com.fferreira.example.hazelcast.mapstore.cassandra.CassandraSchema.ID_COLUMN;
+import static com.fferreira.example.hazelcast.mapstore.cassandra.CassandraSchema.VALUE_COLUMN;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class CassandraClient implements HazelcastDao<EntryEntity> {
+public class CassandraClient implements HazelcastDao<EntryEntity>,
+    StagingDao {
 
   static final Logger log = LoggerFactory.getLogger(CassandraClient.class);
 
+  /**
+   * Default number of requests allowed in flight at once, whatever host
+   * they go to.
+   */
+  public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+  /**
+   * Default number of rows fetched per page on full table scans.
+   */
+  public static final int DEFAULT_FETCH_SIZE = 1000;
+
+  /**
+   * Default number of token ranges read in parallel on full table scans.
+   */
+  public static final int DEFAULT_SCAN_PARALLELISM = 4;
+
+  private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+  private int fetchSize = DEFAULT_FETCH_SIZE;
+  private int scanParallelism = DEFAULT_SCAN_PARALLELISM;
+  private CassandraSchema schema = new CassandraSchema();
+  private boolean ownsSession = true;
+
   private Cluster cluster;
+  private Session session;
+  private InFlightWindow window;
+  private ExecutorService scanExecutor;
 
+  // statements prepared once at initialize()
+  private PreparedStatement insertStmt;
+  private PreparedStatement deleteStmt;
+  private PreparedStatement selectStmt;
+  private PreparedStatement selectAllStmt;
+  private PreparedStatement selectRangeStmt;
+  private PreparedStatement selectIdsStmt;
+  private PreparedStatement selectIdsRangeStmt;
+
+  /**
+   * Connects to the cluster, creates the keyspace and table when missing and
+   * prepares every statement used by this client. The session is kept open
+   * and shared by all operations until {@link #close()}.
+   */
   public void initialize(String node) {
     cluster = Cluster.builder().addContactPoint(node).build();
     final Metadata metadata = cluster.getMetadata();
@@ -43,79 +90,231 @@ public class CassandraClient implements HazelcastDao<EntryEntity> {
           log.info("Datacenter: {}; Host: {}; Rack: {}",
               host.getDatacenter(), host.getAddress(), host.getRack());
     });
+    session = cluster.connect();
+    window = new InFlightWindow(session, maxInFlight);
+    // daemon threads, so a client left open never holds the JVM up
+    scanExecutor = Executors.newFixedThreadPool(scanParallelism, r -> {
+      final Thread thread = new Thread(r, "cassandra-scan");
+      thread.setDaemon(true);
+      return thread;
+    });
+    schema.create(session);
+    prepareStatements();
+  }
+
+  /**
+   * Returns a client for another table of the keyspace, with the same
+   * options, creating the table and preparing its statements now. It shares
+   * the session, in-flight window and scan threads of this client, which
+   * keeps owning them.
+   */
+  public CassandraClient forTable(String table) {
+    final CassandraClient client = new CassandraClient();
+    client.maxInFlight = maxInFlight;
+    client.fetchSize = fetchSize;
+    client.scanParallelism = scanParallelism;
+    client.schema = schema.withTable(table);
+    client.ownsSession = false;
+    client.cluster = cluster;
+    client.session = session;
+    client.window = window;
+    client.scanExecutor = scanExecutor;
+    client.schema.create(session);
+    client.prepareStatements();
+    return client;
+  }
+
+  /**
+   * Sets how many asynchronous requests may be in flight at once, a single
+   * limit shared by every host and by the clients of other tables returned
+   * by {@link #forTable(String)}. Must be called before
+   * {@link #initialize(String)}.
+   */
+  public void setMaxInFlight(int maxInFlight) {
+    this.maxInFlight = maxInFlight;
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  public void setFetchSize(int fetchSize) {
+    this.fetchSize = fetchSize;
+  }
+
+  public int getFetchSize() {
+    return fetchSize;
+  }
+
+  /**
+   * Sets how many token ranges are read concurrently on full table scans,
+   * must be called before {@link #initialize(String)}.
+   */
+  public void setScanParallelism(int scanParallelism) {
+    this.scanParallelism = scanParallelism;
+  }
+
+  public int getScanParallelism() {
+    return scanParallelism;
+  }
+
+  /**
+   * Sets the table layout and options, must be called before
+   * {@link #initialize(String)}.
+   */
+  public void setSchema(CassandraSchema schema) {
+    this.schema = schema;
+  }
+
+  public CassandraSchema getSchema() {
+    return schema;
   }
 
   @Override
   public void persist(final EntryEntity value) {
-    connect().execute(//
-        "INSERT INTO " + Constants.CASSANDRA_KEYSPACE_TABLE_NAME//
-            + " (id, data) "//
-            + "VALUES ('" + value.getId() + "','" + value.getMessage() //
-            + "');");
+    session.execute(bindInsert(value));
   }
 
+  public ResultSetFuture persistAsync(final EntryEntity value) {
+    return window.executeAsync(bindInsert(value));
+  }
+
+  /**
+   * Sends one insert per entry concurrently, bounded by the in-flight window,
+   * and waits for all of them.
+   */
+  @Override
+  public void persistAll(final Collection<EntryEntity> values) {
+    final List<BoundStatement> statements = new ArrayList<>(values.size());
+    values.stream().
+        forEach((value) -> {
+          statements.add(bindInsert(value));
+    });
+    window.executeAll(statements);
+  }
+
+  /**
+   * Sends one insert per staged entry, bound to slices of the staged
+   * buffers, through the in-flight window and waits for all of them.
+   */
   @Override
-  public void remove(String key) {
-    connect().execute(//
-        "DELETE FROM  " + Constants.CASSANDRA_KEYSPACE_TABLE_NAME//
-            + " WHERE id = '" + key + "';");
+  public void persistStaged(final StagedBatch batch) {
+    final List<BoundStatement> statements = new ArrayList<>(batch.size());
+    batch.forEach((id, version, data) -> {
+      statements.add(schema.bindStagedInsert(insertStmt, id, version, data));
+    });
+    window.executeAll(statements);
+  }
+
+  @Override
+  public void remove(String key, long version) {
+    session.execute(schema.bindDelete(deleteStmt, key, version));
+  }
+
+  public ResultSetFuture removeAsync(String key, long version) {
+    return window.executeAsync(schema.bindDelete(deleteStmt, key, version));
+  }
+
+  @Override
+  public void removeAll(final Map<String, Long> versions) {
+    final List<BoundStatement> statements = new ArrayList<>(versions.size());
+    versions.forEach((key, version) -> {
+      statements.add(schema.bindDelete(deleteStmt, key, version));
+    });
+    window.executeAll(statements);
   }
 
   @Override
   public EntryEntity find(String key) {
-    ResultSet res = connect().execute(//
-        "SELECT * FROM  " + Constants.CASSANDRA_KEYSPACE_TABLE_NAME//
-            + " WHERE id = '" + key + "';");
-    if (res.getAvailableWithoutFetching() > 0) {
-      final Row r = res.one();
-      return new EntryEntity(r.getString(0), r.getString(1));
-    }
-    return null;
+    final Row r = session.execute(selectStmt.bind(key)).one();
+    return r == null ? null : schema.toEntity(r);
   }
 
   @Override
   public List<EntryEntity> findAll() {
-    final ResultSet rowList = connect().execute(
-    "SELECT * FROM " + Constants.CASSANDRA_KEYSPACE_TABLE_NAME + ";");
-    if(rowList.getAvailableWithoutFetching()>0) {
-      final List<EntryEntity> result = new  ArrayList<>();
-      rowList.all().stream().
-          forEach((row) -> {
-            result.add(new EntryEntity(row.getString(0), row.getString(1)));
-      });
-      return result;
-    }
-    return Collections.EMPTY_LIST;
+    final List<EntryEntity> result = new ArrayList<>();
+    scan(selectRangeStmt, selectAllStmt, schema::toEntity).forEach(
+        result::add);
+    return result;
   }
 
-  public Session connect() {
-    return cluster.connect();
+  /**
+   * Streams every id in the table, reading only the id column with a paged
+   * and token range split scan.
+   */
+  @Override
+  public Iterable<String> findAllIds() {
+    return scan(selectIdsRangeStmt, selectIdsStmt, schema::toId);
   }
 
-  public void close() {
-    cluster.close();
+  public ResultSetFuture findAsync(String key) {
+    return window.executeAsync(selectStmt.bind(key));
   }
 
+  /**
+   * Looks up every key with its own single partition read, all in flight
+   * concurrently, instead of one coordinator-side IN query.
+   */
   @Override
   public List<EntryEntity> findAll(Collection<String> ids) {
-    //Transform collection into a string
-    final String filters = String.join(",", ids.stream().
-        map((id) -> "'" + id + "'").collect(Collectors.toList()));
-    
-    
-    String query = //
-        "SELECT * FROM  " + Constants.CASSANDRA_KEYSPACE_TABLE_NAME//
-            + " WHERE id IN (" + filters + ");";
-    log.info("Query: {}",query);
-    ResultSet rowList = connect().execute(query);
-    if(rowList.getAvailableWithoutFetching()>0) {
-      final List<EntryEntity> result = new  ArrayList<>();
-      rowList.all().stream().
-          forEach((row) -> {
-            result.add(new EntryEntity(row.getString(0), row.getString(1)));
-      });
-      return result;
+    final List<BoundStatement> statements = new ArrayList<>(ids.size());
+    ids.stream().
+        forEach((id) -> {
+          statements.add(selectStmt.bind(id));
+    });
+    final List<EntryEntity> result = new ArrayList<>(ids.size());
+    window.executeAll(statements).stream().
+        forEach((rows) -> {
+          final Row row = rows.one();
+          if (row != null) {
+            result.add(schema.toEntity(row));
+          }
+    });
+    return result;
+  }
+
+  /**
+   * Returns the session shared by this client.
+   */
+  public Session connect() {
+    return session;
+  }
+
+  public void close() {
+    if (!ownsSession) {
+      return;
+    }
+    if (scanExecutor != null) {
+      scanExecutor.shutdownNow();
+    }
+    if (session != null) {
+      session.close();
     }
-    return Collections.EMPTY_LIST;
+    cluster.close();
+  }
+
+  // private API
+  private void prepareStatements() {
+    insertStmt = session.prepare(schema.insertCql());
+    deleteStmt = session.prepare(schema.deleteCql());
+    selectStmt = session.prepare(schema.selectByIdCql(ID_COLUMN,
+        VALUE_COLUMN));
+    selectAllStmt = session.prepare(schema.selectAllCql(ID_COLUMN,
+        VALUE_COLUMN));
+    selectRangeStmt = session.prepare(schema.selectRangeCql(ID_COLUMN,
+        VALUE_COLUMN));
+    selectIdsStmt = session.prepare(schema.selectAllCql(ID_COLUMN));
+    selectIdsRangeStmt = session.prepare(schema.selectRangeCql(ID_COLUMN));
+  }
+
+  private <T> Iterable<T> scan(final PreparedStatement rangeStmt,
+      final PreparedStatement fullStmt, final Function<Row, T> mapper) {
+    // a few ranges per thread so a slow range does not stall the scan
+    return new TokenRangeScanner<>(session, rangeStmt, fullStmt, mapper,
+        scanExecutor, scanParallelism * 4, fetchSize);
+  }
+
+  private BoundStatement bindInsert(final EntryEntity value) {
+    return schema.bindInsert(insertStmt, value);
   }
 }
@@ -0,0 +1,287 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore.cassandra;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TableMetadata;
+import com.fferreira.example.hazelcast.Constants;
+import com.fferreira.example.hazelcast.mapstore.EntryEntity;
+import com.fferreira.example.hazelcast.mapstore.Versioned;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Layout of the entry table: an {@code id text} partition key, a
+ * {@code data blob} value and, when enabled, a {@code written_at timestamp}
+ * set on every insert. Inserts are written {@code USING TIMESTAMP} of the
+ * entry version, so Cassandra keeps the newest version whatever the order
+ * writes arrive in. Creates the keyspace and table, with the compaction and
+ * default TTL options, builds the CQL of every statement and maps rows by
+ * column name.
+ */
+public class CassandraSchema {
+
+  static final Logger log = LoggerFactory.getLogger(CassandraSchema.class);
+
+  public static final String ID_COLUMN = "id";
+  public static final String VALUE_COLUMN = "data";
+  public static final String WRITTEN_AT_COLUMN = "written_at";
+
+  /**
+   * Leveled compaction bounds the number of SSTables a read touches when the
+   * same ids are overwritten over and over.
+   */
+  public static final String DEFAULT_COMPACTION = "LeveledCompactionStrategy";
+  public static final int DEFAULT_REPLICATION_FACTOR = 3;
+
+  private final String keyspace;
+  private final String table;
+  private int replicationFactor = DEFAULT_REPLICATION_FACTOR;
+  private String compaction = DEFAULT_COMPACTION;
+  private int defaultTtlSeconds;
+  private boolean optionsSet;
+  private boolean writeTimestamp;
+
+  public CassandraSchema() {
+    this(Constants.CASSANDRA_KEYSPACE, Constants.CASSANDRA_TABLE_NAME);
+  }
+
+  public CassandraSchema(final String keyspace, final String table) {
+    this.keyspace = keyspace;
+    this.table = table;
+  }
+
+  /**
+   * Creates the keyspace and table when missing, turns the {@code data text}
+   * column of tables created by earlier versions into a blob, adds the write
+   * timestamp column to an existing table when it was enabled later. The
+   * compaction and TTL options of an existing table are only altered when
+   * they were set explicitly and differ from the table's, so options tuned
+   * on the cluster are kept.
+   */
+  public void create(final Session session) {
+    session.execute("CREATE KEYSPACE IF NOT EXISTS " + keyspace
+        + " WITH replication = {'class':'SimpleStrategy', "
+        + "'replication_factor':" + replicationFactor + "};");
+    session.execute("CREATE TABLE IF NOT EXISTS " + getQualifiedTable()
+        + " (" + ID_COLUMN + " text PRIMARY KEY, " + VALUE_COLUMN + " blob"
+        + (writeTimestamp ? ", " + WRITTEN_AT_COLUMN + " timestamp" : "")
+        + ") WITH " + tableOptions() + ";");
+    final KeyspaceMetadata ksMetadata = session.getCluster().getMetadata()
+        .getKeyspace(keyspace);
+    final TableMetadata tableMetadata = ksMetadata == null ? null : ksMetadata
+        .getTable(table);
+    if (tableMetadata != null && tableMetadata.getColumn(VALUE_COLUMN)
+        .getType().getName() != DataType.Name.BLOB) {
+      // text values are UTF-8 JSON, which the JSON codec reads as they are
+      log.info("Altering column {} of {} to blob", VALUE_COLUMN,
+          getQualifiedTable());
+      session.execute("ALTER TABLE " + getQualifiedTable() + " ALTER "
+          + VALUE_COLUMN + " TYPE blob;");
+    }
+    if (writeTimestamp && tableMetadata != null
+        && tableMetadata.getColumn(WRITTEN_AT_COLUMN) == null) {
+      log.info("Adding column {} to {}", WRITTEN_AT_COLUMN,
+          getQualifiedTable());
+      session.execute("ALTER TABLE " + getQualifiedTable() + " ADD "
+          + WRITTEN_AT_COLUMN + " timestamp;");
+    }
+    if (optionsSet && tableMetadata != null && !hasOptions(tableMetadata
+        .getOptions())) {
+      log.info("Altering options of {} to {}", getQualifiedTable(),
+          tableOptions());
+      session.execute("ALTER TABLE " + getQualifiedTable() + " WITH "
+          + tableOptions() + ";");
+    }
+  }
+
+  /**
+   * Returns a schema with the same options for another table of the
+   * keyspace.
+   */
+  public CassandraSchema withTable(final String otherTable) {
+    final CassandraSchema other = new CassandraSchema(keyspace, otherTable);
+    other.replicationFactor = replicationFactor;
+    other.compaction = compaction;
+    other.defaultTtlSeconds = defaultTtlSeconds;
+    other.optionsSet = optionsSet;
+    other.writeTimestamp = writeTimestamp;
+    return other;
+  }
+
+  public String getQualifiedTable() {
+    return keyspace + "." + table;
+  }
+
+  public String insertCql() {
+    return "INSERT INTO " + getQualifiedTable() + " (" + ID_COLUMN + ", "
+        + VALUE_COLUMN + (writeTimestamp ? ", " + WRITTEN_AT_COLUMN : "")
+        + ") VALUES (?, ?" + (writeTimestamp ? ", ?" : "")
+        + ") USING TIMESTAMP ?;";
+  }
+
+  /**
+   * Deletes are timestamped like inserts, so a delete only wins over the
+   * writes made before it, whatever order they reach Cassandra in.
+   */
+  public String deleteCql() {
+    return "DELETE FROM " + getQualifiedTable() + " USING TIMESTAMP ? WHERE "
+        + ID_COLUMN + " = ?;";
+  }
+
+  /**
+   * Selects only the given columns of a single id.
+   */
+  public String selectByIdCql(final String... columns) {
+    return selectCql(columns) + " WHERE " + ID_COLUMN + " = ?;";
+  }
+
+  public String selectAllCql(final String... columns) {
+    return selectCql(columns) + ";";
+  }
+
+  /**
+   * Selects the given columns of the rows whose token is in {@code (?, ?]}.
+   */
+  public String selectRangeCql(final String... columns) {
+    return selectCql(columns) + " WHERE token(" + ID_COLUMN + ") > ? AND token("
+        + ID_COLUMN + ") <= ?;";
+  }
+
+  /**
+   * Binds an insert of the entry, timestamped with its version in
+   * microseconds or with the current time when it has none.
+   */
+  public BoundStatement bindInsert(final PreparedStatement insert,
+      final EntryEntity value) {
+    final ByteBuffer data = ByteBuffer.wrap(value.getMessage());
+    final long version = value.getVersion() != null ? value.getVersion()
+        : Versioned.now();
+    return writeTimestamp ? insert.bind(value.getId(), data, new Date(version
+        / 1000), version) : insert.bind(value.getId(), data, version);
+  }
+
+  /**
+   * Binds an insert straight from the fields of a staged entry, the version
+   * slice already holds the big endian bigint of the write timestamp.
+   */
+  public BoundStatement bindStagedInsert(final PreparedStatement insert,
+      final ByteBuffer id, final ByteBuffer version, final ByteBuffer data) {
+    final BoundStatement bound = insert.bind();
+    bound.setBytesUnsafe(0, id);
+    bound.setBytesUnsafe(1, data);
+    if (writeTimestamp) {
+      bound.setDate(2, new Date(version.getLong(version.position()) / 1000));
+    }
+    bound.setBytesUnsafe(writeTimestamp ? 3 : 2, version);
+    return bound;
+  }
+
+  public BoundStatement bindDelete(final PreparedStatement delete,
+      final String id, final long version) {
+    return delete.bind(version, id);
+  }
+
+  public String toId(final Row row) {
+    return row.getString(ID_COLUMN);
+  }
+
+  public EntryEntity toEntity(final Row row) {
+    final ByteBuffer data = row.getBytes(VALUE_COLUMN);
+    final byte[] message = new byte[data.remaining()];
+    data.get(message);
+    return new EntryEntity(row.getString(ID_COLUMN), message);
+  }
+
+  // private API
+  private String selectCql(final String... columns) {
+    return "SELECT " + String.join(", ", columns) + " FROM "
+        + getQualifiedTable();
+  }
+
+  private String tableOptions() {
+    return "compaction = {'class':'" + compaction + "'}"
+        + " AND default_time_to_live = " + defaultTtlSeconds;
+  }
+
+  private boolean hasOptions(final TableMetadata.Options options) {
+    // the class is reported fully qualified
+    final String current = options.getCompaction().get("class");
+    return options.getDefaultTimeToLive() == defaultTtlSeconds
+        && current != null && (current.equals(compaction) || current
+        .endsWith("." + compaction));
+  }
+
+  public String getKeyspace() {
+    return keyspace;
+  }
+
+  public String getTable() {
+    return table;
+  }
+
+  public int getReplicationFactor() {
+    return replicationFactor;
+  }
+
+  /**
+   * Replication factor of the keyspace, only used when creating it.
+   */
+  public void setReplicationFactor(int replicationFactor) {
+    this.replicationFactor = replicationFactor;
+  }
+
+  public String getCompaction() {
+    return compaction;
+  }
+
+  /**
+   * Sets the compaction strategy class, e.g. SizeTieredCompactionStrategy,
+   * also applied to the table when it already exists.
+   */
+  public void setCompaction(String compaction) {
+    this.compaction = compaction;
+    this.optionsSet = true;
+  }
+
+  public int getDefaultTtlSeconds() {
+    return defaultTtlSeconds;
+  }
+
+  /**
+   * Sets the table's default time to live, zero keeps rows forever. Also
+   * applied to the table when it already exists.
+   */
+  public void setDefaultTtlSeconds(int defaultTtlSeconds) {
+    this.defaultTtlSeconds = defaultTtlSeconds;
+    this.optionsSet = true;
+  }
+
+  public boolean isWriteTimestamp() {
+    return writeTimestamp;
+  }
+
+  /**
+   * Stores the time of each entry version in the written_at column.
+   */
+  public void setWriteTimestamp(boolean writeTimestamp) {
+    this.writeTimestamp = writeTimestamp;
+  }
+}
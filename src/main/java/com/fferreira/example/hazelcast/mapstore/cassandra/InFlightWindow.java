@@ -0,0 +1,82 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore.cassandra;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Executes statements asynchronously while bounding the number of requests
+ * in flight. Callers block on {@link #executeAsync(Statement)} once the
+ * window is full, until a previous request completes.
+ */
+class InFlightWindow {
+
+  private final Session session;
+  private final Semaphore permits;
+
+  InFlightWindow(final Session session, final int maxInFlight) {
+    this.session = session;
+    this.permits = new Semaphore(maxInFlight);
+  }
+
+  ResultSetFuture executeAsync(final Statement statement) {
+    permits.acquireUninterruptibly();
+    final ResultSetFuture future;
+    try {
+      future = session.executeAsync(statement);
+    } catch (RuntimeException ex) {
+      permits.release();
+      throw ex;
+    }
+    future.addListener(permits::release, MoreExecutors.sameThreadExecutor());
+    return future;
+  }
+
+  /**
+   * Sends all statements through the window and waits for all of them,
+   * rethrowing the first failure only once every sent request completed, so
+   * none of them still reads buffers the caller releases on failure.
+   */
+  List<ResultSet> executeAll(final List<? extends Statement> statements) {
+    final List<ResultSetFuture> futures = new ArrayList<>(statements.size());
+    RuntimeException failure = null;
+    try {
+      for (Statement statement : statements) {
+        futures.add(executeAsync(statement));
+      }
+    } catch (RuntimeException ex) {
+      failure = ex;
+    }
+    final List<ResultSet> results = new ArrayList<>(futures.size());
+    for (ResultSetFuture future : futures) {
+      try {
+        results.add(future.getUninterruptibly());
+      } catch (RuntimeException ex) {
+        if (failure == null) {
+          failure = ex;
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return results;
+  }
+}
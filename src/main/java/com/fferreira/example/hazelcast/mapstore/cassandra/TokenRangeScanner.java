@@ -0,0 +1,246 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore.cassandra;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Full table scan split in token ranges that are read in parallel, each one
+ * paged by the driver. Rows are handed to the consumer through a bounded
+ * queue, so memory stays proportional to the page size and not to the table
+ * size.
+ *
+ * Token splitting assumes the Murmur3 partitioner, otherwise the whole table
+ * is read as a single paged range. The first failing range cancels the
+ * others, and so does closing the iterator. An iterator left unread for
+ * {@link #STALL_TIMEOUT_MILLIS} is cancelled too, so abandoned scans never
+ * keep the executor threads.
+ */
+class TokenRangeScanner<T> implements Iterable<T> {
+
+  static final Logger log = LoggerFactory.getLogger(TokenRangeScanner.class);
+
+  static final String MURMUR3_PARTITIONER =
+      "org.apache.cassandra.dht.Murmur3Partitioner";
+
+  /**
+   * How long a reading thread waits for room in a full queue before giving
+   * up the scan.
+   */
+  static final long STALL_TIMEOUT_MILLIS = 60000;
+
+  static final long POLL_MILLIS = 100;
+
+  private final Session session;
+  private final PreparedStatement rangeStmt;
+  private final PreparedStatement fullStmt;
+  private final Function<Row, T> mapper;
+  private final ExecutorService executor;
+  private final int splits;
+  private final int fetchSize;
+
+  /**
+   * @param rangeStmt statement restricted by {@code token(id) > ? AND
+   * token(id) <= ?}
+   * @param fullStmt unrestricted statement used when tokens cannot be split
+   */
+  TokenRangeScanner(final Session session, final PreparedStatement rangeStmt,
+      final PreparedStatement fullStmt, final Function<Row, T> mapper,
+      final ExecutorService executor, final int splits, final int fetchSize) {
+    this.session = session;
+    this.rangeStmt = rangeStmt;
+    this.fullStmt = fullStmt;
+    this.mapper = mapper;
+    this.executor = executor;
+    this.splits = splits;
+    this.fetchSize = fetchSize;
+  }
+
+  /**
+   * Returns an iterator over every row, also {@link AutoCloseable} to
+   * cancel the scan before reading it to the end.
+   */
+  @Override
+  public ScanIterator iterator() {
+    final List<Statement> statements = statements();
+    final ScanIterator iterator = new ScanIterator(new ArrayBlockingQueue<>(
+        fetchSize), statements.size());
+    statements.stream().
+        forEach((statement) -> {
+          iterator.ranges.add(executor.submit(() -> scan(statement,
+              iterator)));
+    });
+    if (iterator.cancelled) {
+      iterator.close();
+    }
+    return iterator;
+  }
+
+  // private API
+  private List<Statement> statements() {
+    final List<Statement> statements = new ArrayList<>();
+    if (splits > 1 && MURMUR3_PARTITIONER.equals(session.getCluster()
+        .getMetadata().getPartitioner())) {
+      final BigInteger min = BigInteger.valueOf(Long.MIN_VALUE);
+      final BigInteger width = BigInteger.valueOf(Long.MAX_VALUE).subtract(
+          min);
+      final BigInteger count = BigInteger.valueOf(splits);
+      long start = Long.MIN_VALUE;
+      for (int i = 1; i <= splits; i++) {
+        final long end = i == splits ? Long.MAX_VALUE : min.add(
+            width.multiply(BigInteger.valueOf(i)).divide(count)).longValue();
+        statements.add(rangeStmt.bind(start, end));
+        start = end;
+      }
+    } else {
+      statements.add(fullStmt.bind());
+    }
+    statements.stream().
+        forEach((statement) -> {
+          statement.setFetchSize(fetchSize);
+    });
+    return statements;
+  }
+
+  private void scan(final Statement statement, final ScanIterator scan) {
+    try {
+      for (Row row : session.execute(statement)) {
+        if (!scan.offer(Optional.of(mapper.apply(row)))) {
+          return;
+        }
+      }
+      scan.offer(Optional.empty());
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      scan.fail(ex);
+    } catch (RuntimeException ex) {
+      scan.fail(ex);
+    }
+  }
+
+  /**
+   * Reads the rows of every range from one queue, where each range marks
+   * its end with an empty item.
+   */
+  class ScanIterator implements Iterator<T>, AutoCloseable {
+
+    private final BlockingQueue<Optional<T>> queue;
+    private final List<Future<?>> ranges = new CopyOnWriteArrayList<>();
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private volatile boolean cancelled;
+    private int pendingRanges;
+    private T next;
+
+    ScanIterator(final BlockingQueue<Optional<T>> queue, final int ranges) {
+      this.queue = queue;
+      this.pendingRanges = ranges;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null && pendingRanges > 0) {
+        if (failure.get() != null) {
+          throw new IllegalStateException("Error scanning token range",
+              failure.get());
+        }
+        if (cancelled) {
+          throw new IllegalStateException("Token range scan cancelled");
+        }
+        final Optional<T> item;
+        try {
+          item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          close();
+          throw new IllegalStateException("Interrupted while scanning", ex);
+        }
+        if (item == null) {
+          continue;
+        }
+        if (item.isPresent()) {
+          next = item.get();
+        } else {
+          pendingRanges--;
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final T res = next;
+      next = null;
+      return res;
+    }
+
+    /**
+     * Stops the ranges still reading and drops the ones not started yet.
+     */
+    @Override
+    public void close() {
+      cancelled = true;
+      ranges.stream().
+          forEach((range) -> {
+            range.cancel(false);
+      });
+      queue.clear();
+    }
+
+    /**
+     * Hands an item to the reader, returning false once the scan is
+     * cancelled. Gives up the whole scan when the reader stalls.
+     */
+    boolean offer(final Optional<T> item) throws InterruptedException {
+      long waited = 0;
+      while (!cancelled) {
+        if (queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+        waited += POLL_MILLIS;
+        if (waited >= STALL_TIMEOUT_MILLIS) {
+          log.warn("Cancelling token range scan, not read for {} ms",
+              waited);
+          close();
+        }
+      }
+      return false;
+    }
+
+    void fail(final Exception ex) {
+      failure.compareAndSet(null, ex);
+      close();
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore.codec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Writes a key made of several parts as the parts joined by {@code ':'},
+ * escaping {@code ':'} and {@code '\'} inside a part with a backslash, e.g.
+ * a (tenant, user) key becomes {@code acme:42}.
+ */
+public class CompositeKeyCodec<K> implements KeyCodec<K> {
+
+  static final char SEPARATOR = ':';
+  static final char ESCAPE = '\\';
+
+  private final Function<K, List<String>> toParts;
+  private final Function<List<String>, K> fromParts;
+
+  /**
+   * @param toParts splits a key into its parts, in order
+   * @param fromParts builds the key back from its parts
+   */
+  public CompositeKeyCodec(final Function<K, List<String>> toParts,
+      final Function<List<String>, K> fromParts) {
+    this.toParts = toParts;
+    this.fromParts = fromParts;
+  }
+
+  @Override
+  public String encode(final K key) {
+    final StringBuilder sb = new StringBuilder(32);
+    // empty parts still need their separator, so don't go by the length
+    boolean first = true;
+    for (String part : toParts.apply(key)) {
+      if (!first) {
+        sb.append(SEPARATOR);
+      }
+      first = false;
+      for (int i = 0; i < part.length(); i++) {
+        final char c = part.charAt(i);
+        if (c == SEPARATOR || c == ESCAPE) {
+          sb.append(ESCAPE);
+        }
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public K decode(final String id) throws IOException {
+    final List<String> parts = new ArrayList<>(4);
+    final StringBuilder part = new StringBuilder(id.length());
+    for (int i = 0; i < id.length(); i++) {
+      final char c = id.charAt(i);
+      if (c == ESCAPE) {
+        if (++i == id.length()) {
+          throw new IOException("Dangling escape in key " + id);
+        }
+        part.append(id.charAt(i));
+      } else if (c == SEPARATOR) {
+        parts.add(part.toString());
+        part.setLength(0);
+      } else {
+        part.append(c);
+      }
+    }
+    parts.add(part.toString());
+    return fromParts.apply(parts);
+  }
+}
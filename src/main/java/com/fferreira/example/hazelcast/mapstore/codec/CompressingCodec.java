@@ -0,0 +1,217 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore.codec;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdException;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceAware;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Compresses the bytes produced by another codec with Zstd, optionally using
+ * a trained dictionary. Values smaller than the threshold, or that do not
+ * shrink, are kept as the delegate wrote them.
+ *
+ * Compressed values start with a header (magic, format and original length,
+ * followed by the dictionary id when one was used). Bytes without the magic
+ * are handed to the delegate untouched, so rows written before compression
+ * was enabled remain readable. Only kept values that happen to start with the
+ * magic get a header of their own.
+ */
+public class CompressingCodec<V> implements ValueCodec<V>,
+    HazelcastInstanceAware {
+
+  static final byte[] MAGIC = {(byte) 0xC7, 'H', 'Z', 'C'};
+  static final int HEADER_SIZE = MAGIC.length + 1 + 4;
+  static final byte FORMAT_RAW = 0;
+  static final byte FORMAT_ZSTD = 1;
+  /**
+   * Compressed with a dictionary, whose id follows the original length.
+   */
+  static final byte FORMAT_ZSTD_DICT = 2;
+  static final int DICT_HEADER_SIZE = HEADER_SIZE + 4;
+
+  public static final int DEFAULT_THRESHOLD = 256;
+  public static final int DEFAULT_LEVEL = 3;
+
+  private final ValueCodec<V> delegate;
+  private final int threshold;
+  private final int level;
+  private final ZstdDictCompress dictCompress;
+  private final ZstdDictDecompress dictDecompress;
+  private final int dictId;
+
+  public CompressingCodec(final ValueCodec<V> delegate) {
+    this(delegate, DEFAULT_THRESHOLD, DEFAULT_LEVEL, null);
+  }
+
+  /**
+   * @param threshold values encoded to fewer bytes are not compressed
+   * @param dictionary Zstd dictionary, see {@link #trainDictionary(List, int)},
+   * or {@code null} to compress without one
+   */
+  public CompressingCodec(final ValueCodec<V> delegate, final int threshold,
+      final int level, final byte[] dictionary) {
+    this.delegate = delegate;
+    this.threshold = threshold;
+    this.level = level;
+    if (dictionary == null) {
+      dictCompress = null;
+      dictDecompress = null;
+      dictId = 0;
+    } else {
+      dictCompress = new ZstdDictCompress(dictionary, level);
+      dictDecompress = new ZstdDictDecompress(dictionary);
+      dictId = dictionaryId(dictionary);
+    }
+  }
+
+  /**
+   * Returns the id written in the header of values compressed with the
+   * dictionary, the CRC32 of its bytes.
+   */
+  public static int dictionaryId(final byte[] dictionary) {
+    final CRC32 crc = new CRC32();
+    crc.update(dictionary, 0, dictionary.length);
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Trains a dictionary from sample values already encoded by the delegate.
+   */
+  public static byte[] trainDictionary(final List<byte[]> samples,
+      final int maxSize) {
+    final byte[] dictionary = new byte[maxSize];
+    final long size = Zstd.trainFromBuffer(
+        samples.toArray(new byte[samples.size()][]), dictionary);
+    if (Zstd.isError(size)) {
+      throw new IllegalArgumentException("Unable to train dictionary: "
+          + Zstd.getErrorName(size));
+    }
+    return Arrays.copyOf(dictionary, (int) size);
+  }
+
+  /**
+   * Hands the member over to the delegate when it needs it.
+   */
+  @Override
+  public void setHazelcastInstance(final HazelcastInstance instance) {
+    if (delegate instanceof HazelcastInstanceAware) {
+      ((HazelcastInstanceAware) delegate).setHazelcastInstance(instance);
+    }
+  }
+
+  @Override
+  public byte[] encode(final V value) throws IOException {
+    final byte[] raw = delegate.encode(value);
+    if (raw.length < threshold) {
+      return keep(raw);
+    }
+    final byte[] compressed;
+    try {
+      compressed = dictCompress == null ? Zstd.compress(raw, level) : Zstd
+          .compress(raw, dictCompress);
+    } catch (ZstdException ex) {
+      throw new IOException(ex);
+    }
+    // not worth it, keep the raw bytes
+    if (compressed.length >= raw.length) {
+      return keep(raw);
+    }
+    if (dictCompress == null) {
+      return withHeader(FORMAT_ZSTD, raw.length, compressed);
+    }
+    return ByteBuffer.allocate(DICT_HEADER_SIZE + compressed.length)//
+        .put(MAGIC)//
+        .put(FORMAT_ZSTD_DICT)//
+        .putInt(raw.length)//
+        .putInt(dictId)//
+        .put(compressed)//
+        .array();
+  }
+
+  @Override
+  public V decode(final byte[] bytes) throws IOException {
+    if (!hasHeader(bytes)) {
+      return delegate.decode(bytes);
+    }
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes, MAGIC.length,
+        bytes.length - MAGIC.length);
+    final byte format = buffer.get();
+    final int length = buffer.getInt();
+    try {
+      switch (format) {
+        case FORMAT_RAW:
+          return delegate.decode(Arrays.copyOfRange(bytes, HEADER_SIZE,
+              bytes.length));
+        case FORMAT_ZSTD:
+          return delegate.decode(Zstd.decompress(Arrays.copyOfRange(bytes,
+              HEADER_SIZE, bytes.length), length));
+        case FORMAT_ZSTD_DICT:
+          if (bytes.length < DICT_HEADER_SIZE) {
+            throw new IOException("Truncated value header");
+          }
+          final int id = buffer.getInt();
+          if (dictDecompress == null || id != dictId) {
+            throw new IOException(String.format("Value compressed with"
+                + " dictionary %08x, configured %s", id, dictDecompress
+                == null ? "none" : String.format("%08x", dictId)));
+          }
+          return delegate.decode(Zstd.decompress(Arrays.copyOfRange(bytes,
+              DICT_HEADER_SIZE, bytes.length), dictDecompress, length));
+        default:
+          throw new IOException("Unknown value format " + format);
+      }
+    } catch (ZstdException ex) {
+      throw new IOException(ex);
+    }
+  }
+
+  // private API
+  /**
+   * Returns the delegate bytes as they are, unless they would be mistaken
+   * for a header.
+   */
+  private static byte[] keep(final byte[] raw) {
+    return hasHeader(raw) ? withHeader(FORMAT_RAW, raw.length, raw) : raw;
+  }
+
+  private static boolean hasHeader(final byte[] bytes) {
+    if (bytes.length < HEADER_SIZE) {
+      return false;
+    }
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (bytes[i] != MAGIC[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static byte[] withHeader(final byte format, final int length,
+      final byte[] payload) {
+    return ByteBuffer.allocate(HEADER_SIZE + payload.length)//
+        .put(MAGIC)//
+        .put(format)//
+        .putInt(length)//
+        .put(payload)//
+        .array();
+  }
+}
@@ -0,0 +1,77 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore.codec;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceAware;
+import com.hazelcast.instance.HazelcastInstanceImpl;
+import com.hazelcast.internal.serialization.SerializationService;
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.internal.serialization.impl.HeapData;
+import com.hazelcast.nio.serialization.DataSerializable;
+import com.hazelcast.nio.serialization.HazelcastSerializationException;
+import com.hazelcast.spi.impl.SerializationServiceSupport;
+import java.io.IOException;
+
+/**
+ * Stores values in Hazelcast's own binary format, so values implementing
+ * {@link DataSerializable} (or any type Hazelcast can serialize) are written
+ * exactly as they travel between members.
+ *
+ * Once the map store is initialized by a member, the codec switches to that
+ * member's serialization service, so factories and custom serializers of
+ * its SerializationConfig apply. Until then a default service is used.
+ */
+public class HazelcastCodec<V> implements ValueCodec<V>,
+    HazelcastInstanceAware {
+
+  private volatile SerializationService serializationService;
+
+  public HazelcastCodec() {
+    this(new DefaultSerializationServiceBuilder().build());
+  }
+
+  public HazelcastCodec(final SerializationService serializationService) {
+    this.serializationService = serializationService;
+  }
+
+  @Override
+  public void setHazelcastInstance(final HazelcastInstance instance) {
+    // members hand the map store their implementation, not the proxy
+    if (instance instanceof HazelcastInstanceImpl) {
+      serializationService = ((HazelcastInstanceImpl) instance)
+          .getSerializationService();
+    } else if (instance instanceof SerializationServiceSupport) {
+      serializationService = ((SerializationServiceSupport) instance)
+          .getSerializationService();
+    }
+  }
+
+  @Override
+  public byte[] encode(final V value) throws IOException {
+    try {
+      return serializationService.toBytes(value);
+    } catch (HazelcastSerializationException ex) {
+      throw new IOException(ex);
+    }
+  }
+
+  @Override
+  public V decode(final byte[] bytes) throws IOException {
+    try {
+      return serializationService.toObject(new HeapData(bytes));
+    } catch (HazelcastSerializationException ex) {
+      throw new IOException(ex);
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Jackson data binding codec, writing either JSON text or one of the binary
+ * Smile/CBOR formats depending on the given factory.
+ */
+public class JacksonCodec<V> implements ValueCodec<V> {
+
+  private final ObjectReader reader;
+  private final ObjectWriter writer;
+
+  public JacksonCodec(final JsonFactory factory, final Class<V> valueClass) {
+    final ObjectMapper mapper = new ObjectMapper(factory);
+    mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+    // streamed values are written to a caller owned stream
+    mapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+    reader = mapper.reader(valueClass);
+    writer = mapper.writerFor(valueClass);
+  }
+
+  public static <V> JacksonCodec<V> json(final Class<V> valueClass) {
+    return new JacksonCodec<>(new JsonFactory(), valueClass);
+  }
+
+  public static <V> JacksonCodec<V> smile(final Class<V> valueClass) {
+    return new JacksonCodec<>(new SmileFactory(), valueClass);
+  }
+
+  public static <V> JacksonCodec<V> cbor(final Class<V> valueClass) {
+    return new JacksonCodec<>(new CBORFactory(), valueClass);
+  }
+
+  @Override
+  public byte[] encode(final V value) throws IOException {
+    return writer.writeValueAsBytes(value);
+  }
+
+  @Override
+  public void encode(final V value, final OutputStream out)
+      throws IOException {
+    writer.writeValue(out, value);
+  }
+
+  @Override
+  public V decode(final byte[] bytes) throws IOException {
+    return reader.readValue(bytes);
+  }
+}
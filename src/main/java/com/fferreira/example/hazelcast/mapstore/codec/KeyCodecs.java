@@ -0,0 +1,153 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Key codecs writing each supported key type in the same text form as the
+ * JSON key encoding used before, so existing rows keep their ids, without
+ * going through a JSON parser.
+ */
+public final class KeyCodecs {
+
+  private static final KeyCodec<String> STRING = new KeyCodec<String>() {
+    @Override
+    public String encode(final String key) {
+      return key;
+    }
+
+    @Override
+    public String decode(final String id) {
+      return id;
+    }
+  };
+
+  private static final KeyCodec<Long> LONG = new KeyCodec<Long>() {
+    @Override
+    public String encode(final Long key) {
+      return Long.toString(key);
+    }
+
+    @Override
+    public Long decode(final String id) throws IOException {
+      try {
+        return Long.parseLong(id);
+      } catch (NumberFormatException ex) {
+        throw new IOException("Invalid long key " + id, ex);
+      }
+    }
+  };
+
+  private static final KeyCodec<Integer> INTEGER = new KeyCodec<Integer>() {
+    @Override
+    public String encode(final Integer key) {
+      return Integer.toString(key);
+    }
+
+    @Override
+    public Integer decode(final String id) throws IOException {
+      try {
+        return Integer.parseInt(id);
+      } catch (NumberFormatException ex) {
+        throw new IOException("Invalid int key " + id, ex);
+      }
+    }
+  };
+
+  /**
+   * Keeps the quotes of the JSON string form, the ids of existing rows, and
+   * also accepts unquoted ids.
+   */
+  private static final KeyCodec<UUID> UUID_CODEC = new KeyCodec<UUID>() {
+    @Override
+    public String encode(final UUID key) {
+      return '"' + key.toString() + '"';
+    }
+
+    @Override
+    public UUID decode(final String id) throws IOException {
+      final boolean quoted = id.length() > 1 && id.charAt(0) == '"';
+      try {
+        return UUID.fromString(quoted ? id.substring(1, id.length() - 1)
+            : id);
+      } catch (IllegalArgumentException ex) {
+        throw new IOException("Invalid UUID key " + id, ex);
+      }
+    }
+  };
+
+  private KeyCodecs() {
+  }
+
+  public static KeyCodec<String> string() {
+    return STRING;
+  }
+
+  public static KeyCodec<Long> longs() {
+    return LONG;
+  }
+
+  public static KeyCodec<Integer> ints() {
+    return INTEGER;
+  }
+
+  public static KeyCodec<UUID> uuids() {
+    return UUID_CODEC;
+  }
+
+  /**
+   * Writes keys as JSON with a reader and writer bound to the key class once.
+   */
+  public static <K> KeyCodec<K> json(final Class<K> keyClass) {
+    final ObjectMapper mapper = new ObjectMapper();
+    mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+    final ObjectReader reader = mapper.reader(keyClass);
+    final ObjectWriter writer = mapper.writerFor(keyClass);
+    return new KeyCodec<K>() {
+      @Override
+      public String encode(final K key) throws IOException {
+        return writer.writeValueAsString(key);
+      }
+
+      @Override
+      public K decode(final String id) throws IOException {
+        return reader.readValue(id);
+      }
+    };
+  }
+
+  /**
+   * Picks the codec of the key class: String, Long, Integer and UUID have
+   * their own, anything else is written as JSON.
+   */
+  @SuppressWarnings("unchecked")
+  public static <K> KeyCodec<K> forClass(final Class<K> keyClass) {
+    if (String.class.equals(keyClass)) {
+      return (KeyCodec<K>) STRING;
+    } else if (Long.class.equals(keyClass) || long.class.equals(keyClass)) {
+      return (KeyCodec<K>) LONG;
+    } else if (Integer.class.equals(keyClass)
+        || int.class.equals(keyClass)) {
+      return (KeyCodec<K>) INTEGER;
+    } else if (UUID.class.equals(keyClass)) {
+      return (KeyCodec<K>) UUID_CODEC;
+    }
+    return json(keyClass);
+  }
+}
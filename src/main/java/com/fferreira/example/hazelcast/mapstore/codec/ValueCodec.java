@@ -0,0 +1,34 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Converts map values to and from the bytes stored by the DAOs.
+ */
+public interface ValueCodec<V> {
+
+  byte[] encode(V value) throws IOException;
+
+  /**
+   * Writes the encoded value to the stream, codecs able to stream override
+   * it to skip the intermediate array.
+   */
+  default void encode(V value, OutputStream out) throws IOException {
+    out.write(encode(value));
+  }
+
+  V decode(byte[] bytes) throws IOException;
+}
@@ -0,0 +1,126 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore.metrics;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics recorded by a map store, registered in a {@link MetricRegistry}
+ * under the given name. For every {@link Operation} it keeps:
+ * <ul>
+ * <li>{@code <name>.<operation>.calls}: count and latency of the whole call</li>
+ * <li>{@code <name>.<operation>.dao}: latency of the DAO round trips</li>
+ * <li>{@code <name>.<operation>.batch-size}: entries per call</li>
+ * <li>{@code <name>.<operation>.errors}: failed calls</li>
+ * </ul>
+ * plus {@code <name>.serialization.encode} and
+ * {@code <name>.serialization.decode} timers for the value codec.
+ */
+public class MapStoreMetrics {
+
+  public static final String JMX_DOMAIN = "hazelcast.mapstore";
+
+  public enum Operation {
+    STORE("store"),
+    STORE_ALL("store-all"),
+    DELETE("delete"),
+    DELETE_ALL("delete-all"),
+    LOAD("load"),
+    LOAD_ALL("load-all"),
+    LOAD_ALL_KEYS("load-all-keys"),
+    FLUSH("flush");
+
+    private final String metricName;
+
+    Operation(String metricName) {
+      this.metricName = metricName;
+    }
+
+    public String getMetricName() {
+      return metricName;
+    }
+  }
+
+  private final MetricRegistry registry;
+  private final Map<Operation, Timer> calls = new EnumMap<>(Operation.class);
+  private final Map<Operation, Timer> dao = new EnumMap<>(Operation.class);
+  private final Map<Operation, Histogram> batchSizes = new EnumMap<>(
+      Operation.class);
+  private final Map<Operation, Meter> errors = new EnumMap<>(Operation.class);
+  private final Timer encode;
+  private final Timer decode;
+
+  public MapStoreMetrics(final MetricRegistry registry, final String name) {
+    this.registry = registry;
+    for (Operation op : Operation.values()) {
+      final String prefix = MetricRegistry.name(name, op.getMetricName());
+      calls.put(op, registry.timer(MetricRegistry.name(prefix, "calls")));
+      dao.put(op, registry.timer(MetricRegistry.name(prefix, "dao")));
+      batchSizes.put(op, registry.histogram(MetricRegistry.name(prefix,
+          "batch-size")));
+      errors.put(op, registry.meter(MetricRegistry.name(prefix, "errors")));
+    }
+    encode = registry.timer(MetricRegistry.name(name, "serialization",
+        "encode"));
+    decode = registry.timer(MetricRegistry.name(name, "serialization",
+        "decode"));
+  }
+
+  public MetricRegistry getRegistry() {
+    return registry;
+  }
+
+  /**
+   * Starts publishing the registry as MBeans in the {@link #JMX_DOMAIN}
+   * domain. The caller closes the returned reporter.
+   */
+  public JmxReporter startJmxReporter() {
+    final JmxReporter reporter = JmxReporter.forRegistry(registry)//
+        .inDomain(JMX_DOMAIN)//
+        .convertDurationsTo(TimeUnit.MICROSECONDS)//
+        .build();
+    reporter.start();
+    return reporter;
+  }
+
+  /**
+   * Times a whole call and records how many entries it handles.
+   */
+  public Timer.Context call(final Operation op, final int batchSize) {
+    batchSizes.get(op).update(batchSize);
+    return calls.get(op).time();
+  }
+
+  public Timer.Context dao(final Operation op) {
+    return dao.get(op).time();
+  }
+
+  public Timer.Context encode() {
+    return encode.time();
+  }
+
+  public Timer.Context decode() {
+    return decode.time();
+  }
+
+  public void error(final Operation op) {
+    errors.get(op).mark();
+  }
+}
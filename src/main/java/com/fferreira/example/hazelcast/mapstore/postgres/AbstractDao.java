@@ -13,65 +13,98 @@
 package com.fferreira.example.hazelcast.mapstore.postgres;
 
 import java.util.List;
+import java.util.function.Function;
 import javax.persistence.EntityManager;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Root;
-import javax.persistence.metamodel.EntityType;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
 
+/**
+ * Base DAO running each operation of its subclasses in its own unit of work:
+ * an {@link EntityManager} and transaction created from the factory for the
+ * calling thread, committed and closed when the operation returns. Map store
+ * threads therefore never share a persistence context and can use the
+ * connection pool concurrently. The SQL itself lives in the subclasses, which
+ * know the table they work on.
+ */
 public abstract class AbstractDao<T> {
 
-  protected final Class<T> entityClass;
-  private EntityManager em;
+  /**
+   * Number of statements sent per JDBC batch, and of ids per bulk delete, by
+   * the native writes of the DAOs. Hibernate's own batching is not used.
+   */
+  public static final int BATCH_SIZE = 500;
 
-  public AbstractDao(Class<T> entityClass) {
-    this.entityClass = entityClass;
-  }
+  /**
+   * Number of ids read per page when streaming all ids.
+   */
+  public static final int ID_PAGE_SIZE = 5000;
 
-  public EntityManager getEntityManager() {
-    return this.em;
-  }
-
-  public void setEntityManager(EntityManager em) {
-    this.em = em;
-  }
-
-  protected EntityType<T> getMetaModel() {
-    return getEntityManager().getMetamodel().entity(entityClass);
-  }
+  protected final Class<T> entityClass;
+  private final EntityManagerFactory emf;
+  private final ThreadLocal<EntityManager> current = new ThreadLocal<>();
 
-  public void persist(T entity) {
-    getEntityManager().persist(entity);
+  public AbstractDao(Class<T> entityClass, EntityManagerFactory emf) {
+    this.entityClass = entityClass;
+    this.emf = emf;
   }
 
-  public T merge(T entity) {
-    return getEntityManager().merge(entity);
+  public EntityManagerFactory getEntityManagerFactory() {
+    return emf;
   }
 
-  public void remove(String entityId) {
-    T entity = find(entityId);
-    if (entity != null) {
-      getEntityManager().remove(entity);
+  /**
+   * Returns the entity manager of the unit of work running on this thread.
+   */
+  public EntityManager getEntityManager() {
+    final EntityManager em = current.get();
+    if (em == null) {
+      throw new IllegalStateException("No unit of work running for "
+          + Thread.currentThread().getName());
     }
+    return em;
   }
 
-  public T find(String id) {
-    return getEntityManager().find(entityClass, id);
+  /**
+   * Runs the given work in a new entity manager and transaction, or in the
+   * current ones when called from inside another unit of work.
+   */
+  protected <R> R inTransaction(Function<EntityManager, R> work) {
+    final EntityManager existing = current.get();
+    if (existing != null) {
+      return work.apply(existing);
+    }
+    final EntityManager em = emf.createEntityManager();
+    final EntityTransaction tx = em.getTransaction();
+    current.set(em);
+    try {
+      tx.begin();
+      final R res = work.apply(em);
+      tx.commit();
+      return res;
+    } catch (RuntimeException ex) {
+      if (tx.isActive()) {
+        tx.rollback();
+      }
+      throw ex;
+    } finally {
+      current.remove();
+      em.close();
+    }
   }
 
-  public List<T> findAll() {
-    CriteriaQuery<T> cq = getEntityManager().getCriteriaBuilder().createQuery(
-        entityClass);
-    cq.select(cq.from(entityClass));
-    return getEntityManager().createQuery(cq).getResultList();
+  /**
+   * Streams all ids ordered by id, {@link #ID_PAGE_SIZE} at a time. Pages are
+   * read with keyset pagination ({@code id > last ORDER BY id}) so every page
+   * costs the same index range scan, and only the id column is fetched.
+   */
+  public Iterable<String> findAllIds() {
+    return () -> new KeysetIterator(this::findIdsAfter, ID_PAGE_SIZE);
   }
 
-  public int count() {
-    CriteriaBuilder cb = getEntityManager().getCriteriaBuilder();
-    CriteriaQuery<Long> cq = cb.createQuery(Long.class);
-    Root<T> root = cq.from(entityClass);
-    cq.select(cb.count(root));
-    return getEntityManager().createQuery(cq).getSingleResult().intValue();
-  }
+  /**
+   * Returns the next {@link #ID_PAGE_SIZE} ids greater than {@code lastId},
+   * or the first ones when it is null, in ascending order.
+   */
+  protected abstract List<String> findIdsAfter(String lastId);
 
 }
@@ -12,40 +12,443 @@
  */
 package com.fferreira.example.hazelcast.mapstore.postgres;
 
+import com.fferreira.example.hazelcast.mapstore.Batches;
 import com.fferreira.example.hazelcast.mapstore.EntryEntity;
 import com.fferreira.example.hazelcast.mapstore.HazelcastDao;
+import com.fferreira.example.hazelcast.mapstore.StagedBatch;
+import com.fferreira.example.hazelcast.mapstore.StagingDao;
+import com.fferreira.example.hazelcast.mapstore.Versioned;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Predicate;
-import javax.persistence.criteria.Root;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.Query;
+import org.hibernate.Session;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * DAO for {@link RoleEntity}.
+ * DAO for {@link EntryEntity}, reading and writing the {@code HZEntry} table
+ * mapped by the entity or, through {@link #forTable(String)}, any table of
+ * the same layout. Both are upgraded from earlier versions when the DAO is
+ * created.
  */
 public class EntryEntityDao extends AbstractDao<EntryEntity> implements
-    HazelcastDao<EntryEntity> {
+    HazelcastDao<EntryEntity>, StagingDao {
 
-  public EntryEntityDao() {
-    super(EntryEntity.class);
+  static final Logger log = LoggerFactory.getLogger(EntryEntityDao.class);
+
+  /**
+   * Sizes of the IN lists sent to the database. Every chunk is padded up to
+   * one of these sizes so only a few distinct statements are ever prepared
+   * and their plans can be cached.
+   */
+  static final int[] LOAD_CHUNK_SIZES = {1, 8, 64, 512};
+
+  /**
+   * Default connection pool size, also the number of chunks loaded
+   * concurrently.
+   */
+  public static final int DEFAULT_POOL_SIZE = 8;
+
+  /**
+   * Table mapped by {@link EntryEntity}.
+   */
+  public static final String DEFAULT_TABLE = "HZEntry";
+
+  static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS %1$s"
+      + " (id varchar(255) PRIMARY KEY, version int8, message bytea)";
+
+  static final String MESSAGE_TYPE_SQL = "SELECT data_type"
+      + " FROM information_schema.columns"
+      + " WHERE table_name = lower(:table) AND column_name = 'message'";
+
+  /**
+   * Tables created by earlier versions hold the JSON text of the values,
+   * kept as its UTF-8 bytes.
+   */
+  static final String UPGRADE_MESSAGE_SQL = "ALTER TABLE %1$s"
+      + " ALTER COLUMN message TYPE bytea USING convert_to(message, 'UTF8')";
+
+  /**
+   * Insert or update in one statement, needs PostgreSQL 9.5 or newer. An
+   * existing row is only replaced by a newer version.
+   */
+  static final String UPSERT_SQL = "INSERT INTO %1$s (id, version, message)"
+      + " VALUES (?, ?, ?)"
+      + " ON CONFLICT (id) DO UPDATE"
+      + " SET message = EXCLUDED.message, version = EXCLUDED.version"
+      + " WHERE %1$s.version < EXCLUDED.version";
+
+  /**
+   * Deletes only rows written before the delete, pairing each id with the
+   * version of its delete.
+   */
+  static final String DELETE_ANY_SQL = "DELETE FROM %1$s"
+      + " USING unnest(?, ?) AS d (id, version)"
+      + " WHERE %1$s.id = d.id AND %1$s.version <= d.version";
+
+  static final String DELETE_SQL = "DELETE FROM %1$s"
+      + " WHERE id = :id AND version <= :version";
+
+  static final String SELECT_SQL = "SELECT id, version, message FROM %1$s";
+
+  static final String SELECT_IN_SQL = SELECT_SQL + " WHERE id IN (:ids)";
+
+  static final String SELECT_IDS_SQL = "SELECT id FROM %1$s";
+
+  static final String SELECT_IDS_AFTER_SQL = SELECT_IDS_SQL
+      + " WHERE id > :last";
+
+  static final String COUNT_SQL = "SELECT count(*) FROM %1$s";
+
+  /**
+   * Per connection table receiving staged batches, emptied at commit.
+   */
+  static final String CREATE_STAGING_SQL = "CREATE TEMP TABLE IF NOT EXISTS"
+      + " %1$s_staging (LIKE %1$s) ON COMMIT DELETE ROWS";
+
+  static final String COPY_STAGING_SQL = "COPY %1$s_staging"
+      + " (id, version, message) FROM STDIN WITH (FORMAT binary)";
+
+  static final String MERGE_STAGING_SQL = "INSERT INTO %1$s"
+      + " (id, version, message)"
+      + " SELECT id, version, message FROM %1$s_staging"
+      + " ON CONFLICT (id) DO UPDATE"
+      + " SET message = EXCLUDED.message, version = EXCLUDED.version"
+      + " WHERE %1$s.version < EXCLUDED.version";
+
+  /**
+   * Binary COPY signature, flags and header extension length.
+   */
+  static final byte[] COPY_HEADER = {'P', 'G', 'C', 'O', 'P', 'Y', '\n',
+    (byte) 0xFF, '\r', '\n', 0, 0, 0, 0, 0, 0, 0, 0, 0};
+
+  static final byte[] COPY_TRAILER = {(byte) 0xFF, (byte) 0xFF};
+
+  static final int COPY_CHUNK_SIZE = 64 * 1024;
+
+  private final String table;
+  private final boolean ownsFactory;
+  private final boolean ownsExecutor;
+  private final ExecutorService loadExecutor;
+
+  /**
+   * Creates a DAO using the given factory, which stays owned by the caller,
+   * upgrading the {@code HZEntry} table when needed.
+   */
+  public EntryEntityDao(EntityManagerFactory emf) {
+    this(emf, false, DEFAULT_POOL_SIZE);
+  }
+
+  /**
+   * Creates a DAO owning a factory for the given persistence unit, backed by
+   * a HikariCP connection pool of {@link #DEFAULT_POOL_SIZE} connections.
+   */
+  public EntryEntityDao(String persistenceUnitName) {
+    this(persistenceUnitName, DEFAULT_POOL_SIZE);
+  }
+
+  public EntryEntityDao(String persistenceUnitName, int poolSize) {
+    this(Persistence.createEntityManagerFactory(persistenceUnitName,
+        poolProperties(poolSize)), true, poolSize);
+  }
+
+  private EntryEntityDao(EntityManagerFactory emf, boolean ownsFactory,
+      int poolSize) {
+    super(EntryEntity.class, emf);
+    this.table = DEFAULT_TABLE;
+    this.ownsFactory = ownsFactory;
+    this.ownsExecutor = true;
+    // daemon threads, so a DAO left open never holds the JVM up
+    this.loadExecutor = Executors.newFixedThreadPool(poolSize, r -> {
+      final Thread thread = new Thread(r, "entry-dao-load");
+      thread.setDaemon(true);
+      return thread;
+    });
+    upgradeSchema();
+  }
+
+  private EntryEntityDao(EntryEntityDao parent, String table) {
+    super(EntryEntity.class, parent.getEntityManagerFactory());
+    this.table = table;
+    this.ownsFactory = false;
+    this.ownsExecutor = false;
+    this.loadExecutor = parent.loadExecutor;
+  }
+
+  /**
+   * Returns a DAO for the given table, creating or upgrading it when needed.
+   * It shares the factory and loading threads of this DAO, which keeps
+   * owning them.
+   */
+  public EntryEntityDao forTable(String table) {
+    final EntryEntityDao dao = new EntryEntityDao(this, table);
+    dao.inTransaction(em -> em.createNativeQuery(dao.sql(CREATE_TABLE_SQL))
+        .executeUpdate());
+    dao.upgradeSchema();
+    return dao;
+  }
+
+  /**
+   * Turns the text message column of a table created by an earlier version
+   * into bytea, keeping the UTF-8 bytes of the stored JSON. Already done
+   * when the DAO is created.
+   */
+  public void upgradeSchema() {
+    inTransaction(em -> {
+      final List<String> type = resultList(em.createNativeQuery(
+          MESSAGE_TYPE_SQL).setParameter("table", table));
+      if (!type.isEmpty() && !"bytea".equals(type.get(0))) {
+        log.info("Altering column message of {} to bytea", table);
+        em.createNativeQuery(sql(UPGRADE_MESSAGE_SQL)).executeUpdate();
+      }
+      return null;
+    });
+  }
+
+  public String getTable() {
+    return table;
+  }
+
+  @Override
+  public void persist(EntryEntity entity) {
+    persistAll(Collections.singletonList(entity));
+  }
+
+  /**
+   * Writes all entries with a batched native upsert, bypassing the
+   * persistence context, so every entry costs a single statement whether or
+   * not its id already exists.
+   */
+  @Override
+  public void persistAll(Collection<EntryEntity> entities) {
+    inTransaction(em -> {
+      em.unwrap(Session.class).doWork(connection -> {
+        try (PreparedStatement ps = connection.prepareStatement(sql(UPSERT_SQL))) {
+          int count = 0;
+          for (EntryEntity entity : entities) {
+            ps.setString(1, entity.getId());
+            ps.setLong(2, entity.getVersion() != null ? entity.getVersion()
+                : Versioned.now());
+            ps.setBytes(3, entity.getMessage());
+            ps.addBatch();
+            if (++count % BATCH_SIZE == 0) {
+              ps.executeBatch();
+            }
+          }
+          if (count % BATCH_SIZE != 0) {
+            ps.executeBatch();
+          }
+        }
+      });
+      return null;
+    });
+  }
+
+  /**
+   * Deletes the given ids with one statement per {@link #BATCH_SIZE} ids,
+   * binding the ids and the versions of a chunk as two array parameters so
+   * the statement text never changes.
+   */
+  @Override
+  public void removeAll(Map<String, Long> versions) {
+    inTransaction(em -> {
+      em.unwrap(Session.class).doWork(connection -> {
+        try (PreparedStatement ps = connection.prepareStatement(sql(
+            DELETE_ANY_SQL))) {
+          for (List<Map.Entry<String, Long>> chunk : Batches.partition(
+              versions.entrySet(), BATCH_SIZE)) {
+            ps.setArray(1, connection.createArrayOf("varchar", chunk.stream()
+                .map(Map.Entry::getKey).toArray()));
+            ps.setArray(2, connection.createArrayOf("int8", chunk.stream()
+                .map(Map.Entry::getValue).toArray()));
+            ps.executeUpdate();
+          }
+        }
+      });
+      return null;
+    });
+  }
+
+  /**
+   * Streams the staged entries with a binary COPY into a temporary table and
+   * merges them with the same guarded upsert as {@link #persistAll}. The
+   * staged buffers already hold COPY tuples, they only go through one reused
+   * array on their way to the socket.
+   */
+  @Override
+  public void persistStaged(StagedBatch batch) {
+    inTransaction(em -> {
+      em.unwrap(Session.class).doWork(connection -> {
+        try (Statement st = connection.createStatement()) {
+          st.execute(sql(CREATE_STAGING_SQL));
+        }
+        final CopyIn copy = connection.unwrap(PGConnection.class)
+            .getCopyAPI().copyIn(sql(COPY_STAGING_SQL));
+        try {
+          final byte[] chunk = new byte[COPY_CHUNK_SIZE];
+          copy.writeToCopy(COPY_HEADER, 0, COPY_HEADER.length);
+          for (ByteBuffer buffer : batch.buffers()) {
+            while (buffer.hasRemaining()) {
+              final int length = Math.min(chunk.length, buffer.remaining());
+              buffer.get(chunk, 0, length);
+              copy.writeToCopy(chunk, 0, length);
+            }
+          }
+          copy.writeToCopy(COPY_TRAILER, 0, COPY_TRAILER.length);
+          copy.endCopy();
+        } finally {
+          if (copy.isActive()) {
+            copy.cancelCopy();
+          }
+        }
+        try (Statement st = connection.createStatement()) {
+          st.executeUpdate(sql(MERGE_STAGING_SQL));
+        }
+      });
+      return null;
+    });
+  }
+
+  @Override
+  public void remove(String entityId, long version) {
+    inTransaction(em -> em.createNativeQuery(sql(DELETE_SQL))
+        .setParameter("id", entityId)
+        .setParameter("version", version)
+        .executeUpdate());
+  }
+
+  @Override
+  public EntryEntity find(String id) {
+    final List<EntryEntity> found = findChunk(Collections.singletonList(id));
+    return found.isEmpty() ? null : found.get(0);
   }
 
+  @Override
+  public List<EntryEntity> findAll() {
+    return inTransaction(em -> resultList(em.createNativeQuery(sql(
+        SELECT_SQL), EntryEntity.class)));
+  }
+
+  public int count() {
+    return inTransaction(em -> ((Number) em.createNativeQuery(sql(COUNT_SQL))
+        .getSingleResult()).intValue());
+  }
+
+  /**
+   * Loads the given ids in chunks, each chunk in its own unit of work so
+   * chunks run concurrently on different pooled connections.
+   */
   @Override
   public List<EntryEntity> findAll(Collection<String> ids) {
-    final CriteriaBuilder cb = getEntityManager().getCriteriaBuilder();
-    final CriteriaQuery<EntryEntity> cq = cb.createQuery(entityClass);
-    final Root<EntryEntity> root = cq.from(entityClass);
-    cq.select(root);
-    final List<Predicate> orPredicates = new ArrayList<>();
-    ids.stream().
-        forEach((id) -> {
-          orPredicates.add(cb.equal(root.get("id"), id));
+    final int maxChunk = LOAD_CHUNK_SIZES[LOAD_CHUNK_SIZES.length - 1];
+    final List<List<String>> chunks = Batches.partition(ids, maxChunk);
+    if (chunks.size() <= 1) {
+      return chunks.isEmpty() ? new ArrayList<>() : findChunk(chunks.get(0));
+    }
+    final List<CompletableFuture<List<EntryEntity>>> futures = chunks.stream()
+        .map(chunk -> CompletableFuture.supplyAsync(() -> findChunk(chunk),
+            loadExecutor))
+        .collect(Collectors.toList());
+    final List<EntryEntity> result = new ArrayList<>(ids.size());
+    try {
+      futures.stream().
+          forEach((future) -> {
+            result.addAll(future.join());
+      });
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      throw ex;
+    }
+    return result;
+  }
+
+  /**
+   * Stops the loading threads and closes the factory when owned by this DAO.
+   */
+  public void close() {
+    if (ownsExecutor) {
+      loadExecutor.shutdown();
+    }
+    if (ownsFactory) {
+      getEntityManagerFactory().close();
+    }
+  }
+
+  @Override
+  protected List<String> findIdsAfter(String lastId) {
+    return inTransaction(em -> {
+      final Query query = lastId == null ? em.createNativeQuery(sql(
+          SELECT_IDS_SQL) + " ORDER BY id") : em.createNativeQuery(sql(
+          SELECT_IDS_AFTER_SQL) + " ORDER BY id").setParameter("last",
+          lastId);
+      return resultList(query.setMaxResults(ID_PAGE_SIZE));
     });
-    cq.where(cb.or(orPredicates
-        .toArray(new Predicate[orPredicates.size()])));
+  }
+
+  // private API
+  private List<EntryEntity> findChunk(final List<String> chunk) {
+    return inTransaction(em -> resultList(em.createNativeQuery(sql(
+        SELECT_IN_SQL), EntryEntity.class)
+        .setParameter("ids", pad(chunk))));
+  }
+
+  /**
+   * Native queries only return raw lists, typed here by the caller after the
+   * columns or entity class it selected.
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> List<T> resultList(final Query query) {
+    return query.getResultList();
+  }
+
+  private String sql(final String template) {
+    return String.format(template, table);
+  }
+
+  private static Map<String, Object> poolProperties(final int poolSize) {
+    final Map<String, Object> props = new HashMap<>();
+    props.put("hibernate.connection.provider_class",
+        "org.hibernate.hikaricp.internal.HikariCPConnectionProvider");
+    props.put("hibernate.hikari.maximumPoolSize", String.valueOf(poolSize));
+    return props;
+  }
 
-    return getEntityManager().createQuery(cq).getResultList();
+  /**
+   * Repeats the last id until the chunk reaches the next stable size, the
+   * duplicates do not change the result.
+   */
+  private static List<String> pad(final List<String> chunk) {
+    int size = chunk.size();
+    for (int candidate : LOAD_CHUNK_SIZES) {
+      if (candidate >= size) {
+        size = candidate;
+        break;
+      }
+    }
+    final List<String> padded = new ArrayList<>(size);
+    padded.addAll(chunk);
+    final String last = chunk.get(chunk.size() - 1);
+    while (padded.size() < size) {
+      padded.add(last);
+    }
+    return padded;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,56 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore.postgres;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Iterates ordered ids one page at a time. Each page is requested with the
+ * last id of the previous one ({@code null} for the first page), so only a
+ * single page is held in memory.
+ */
+class KeysetIterator implements Iterator<String> {
+
+  private final Function<String, List<String>> pageLoader;
+  private final int pageSize;
+  private List<String> page;
+  private int index;
+  private boolean lastPage;
+
+  KeysetIterator(final Function<String, List<String>> pageLoader,
+      final int pageSize) {
+    this.pageLoader = pageLoader;
+    this.pageSize = pageSize;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (page == null || (index == page.size() && !lastPage)) {
+      page = pageLoader.apply(page == null ? null : page.get(page.size() - 1));
+      index = 0;
+      lastPage = page.size() < pageSize;
+    }
+    return index < page.size();
+  }
+
+  @Override
+  public String next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return page.get(index++);
+  }
+}
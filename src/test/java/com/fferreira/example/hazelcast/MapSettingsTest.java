@@ -0,0 +1,80 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast;
+
+import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.MapStoreConfig;
+import java.util.Properties;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+@Test(suiteName = "Map Settings Test")
+public class MapSettingsTest {
+
+  @Test
+  public void test_map_settings_override_defaults() {
+    final Properties props = new Properties();
+    props.setProperty("map.default.write-delay-seconds", "5");
+    props.setProperty("map.default.backup-count", "2");
+    props.setProperty("map.default.write-coalescing", "false");
+    props.setProperty("map.users.write-delay-seconds", " 0 ");
+    props.setProperty("map.users.in-memory-format", "OBJECT");
+    props.setProperty("map.users.write-coalescing", "true");
+
+    final MapSettings settings = MapSettings.fromProperties(props, "users");
+
+    // overridden by the map
+    assertEquals(settings.getWriteDelaySeconds(), 0);
+    assertEquals(settings.getInMemoryFormat(), InMemoryFormat.OBJECT);
+    assertTrue(settings.isWriteCoalescing());
+    // inherited from the defaults
+    assertEquals(settings.getBackupCount(), 2);
+  }
+
+  @Test
+  public void test_other_maps_only_see_defaults() {
+    final Properties props = new Properties();
+    props.setProperty("map.default.write-delay-seconds", "5");
+    props.setProperty("map.default.write-coalescing", "false");
+    props.setProperty("map.users.write-delay-seconds", "0");
+    props.setProperty("map.users.eviction-policy", "LFU");
+
+    final MapSettings settings = MapSettings.fromProperties(props, "orders");
+
+    assertEquals(settings.getWriteDelaySeconds(), 5);
+    assertFalse(settings.isWriteCoalescing());
+    assertEquals(settings.getEvictionPolicy(),
+        MapConfig.DEFAULT_EVICTION_POLICY);
+  }
+
+  @Test
+  public void test_applied_to_map_config() {
+    final Properties props = new Properties();
+    props.setProperty("map.default.max-size", "1000");
+    props.setProperty("map.users.initial-load-mode", "EAGER");
+    props.setProperty("map.users.eviction-policy", "LRU");
+    final MapConfig mapCfg = new MapConfig("users");
+    final MapStoreConfig mapStoreCfg = new MapStoreConfig();
+
+    MapSettings.fromProperties(props, "users").applyTo(mapCfg, mapStoreCfg);
+
+    assertEquals(mapStoreCfg.getInitialLoadMode(),
+        MapStoreConfig.InitialLoadMode.EAGER);
+    assertEquals(mapCfg.getEvictionPolicy(), EvictionPolicy.LRU);
+    assertEquals(mapCfg.getMaxSizeConfig().getSize(), 1000);
+  }
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast;
+
+import com.hazelcast.core.IMap;
+import com.hazelcast.query.PagingPredicate;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import org.testng.annotations.Test;
+
+@Test(suiteName = "Paging Iterator Test")
+public class PagingIteratorTest {
+
+  private static final int PAGE_SIZE = 3;
+
+  @Test
+  public void test_no_matches() {
+    final List<Integer> pages = new ArrayList<>();
+
+    assertFalse(iterator(values(0), pages).hasNext());
+    assertEquals(pages, Arrays.asList(0));
+  }
+
+  @Test
+  public void test_partial_last_page() {
+    final List<Integer> pages = new ArrayList<>();
+
+    assertEquals(drain(iterator(values(7), pages)), values(7));
+    assertEquals(pages, Arrays.asList(0, 1, 2));
+  }
+
+  @Test
+  public void test_exact_multiple_of_page_size() {
+    final List<Integer> pages = new ArrayList<>();
+
+    // a full last page needs one more, empty, page to end the iteration
+    assertEquals(drain(iterator(values(6), pages)), values(6));
+    assertEquals(pages, Arrays.asList(0, 1, 2));
+  }
+
+  @Test(expectedExceptions = NoSuchElementException.class)
+  public void test_next_past_the_end() {
+    final PagingIterator<String, String> iterator = iterator(values(1),
+        new ArrayList<>());
+    iterator.next();
+    iterator.next();
+  }
+
+  // private API
+  /**
+   * Iterates a map stub answering {@code values(PagingPredicate)} with the
+   * requested page of {@code values}, recording every page asked for.
+   */
+  @SuppressWarnings("unchecked")
+  private static PagingIterator<String, String> iterator(
+      final List<String> values, final List<Integer> pages) {
+    final IMap<String, String> map = (IMap<String, String>) Proxy
+        .newProxyInstance(IMap.class.getClassLoader(), new Class<?>[]{
+          IMap.class}, (proxy, method, args) -> {
+          if (!"values".equals(method.getName()) || args == null) {
+            throw new UnsupportedOperationException(method.getName());
+          }
+          final PagingPredicate predicate = (PagingPredicate) args[0];
+          pages.add(predicate.getPage());
+          final int from = Math.min(values.size(), predicate.getPage()
+              * predicate.getPageSize());
+          return new ArrayList<>(values.subList(from, Math.min(values
+              .size(), from + predicate.getPageSize())));
+        });
+    return new PagingIterator<>(map, new PagingPredicate(PAGE_SIZE));
+  }
+
+  private static List<String> values(final int count) {
+    return IntStream.range(0, count)//
+        .mapToObj((i) -> "user" + i)//
+        .collect(Collectors.toList());
+  }
+
+  private static List<String> drain(final PagingIterator<?, String> iterator) {
+    final List<String> values = new ArrayList<>();
+    iterator.forEachRemaining(values::add);
+    return values;
+  }
+}
@@ -0,0 +1,60 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore;
+
+import com.fferreira.example.hazelcast.User;
+import static org.testng.Assert.assertEquals;
+import org.testng.annotations.Test;
+
+@Test(suiteName = "Hazelcast Map Store Factory Test")
+public class HazelcastMapStoreFactoryTest {
+
+  @Test
+  public void test_table_names_are_valid_identifiers() {
+    assertEquals(HazelcastMapStoreFactory.tableName("User-Sessions"),
+        "user_sessions");
+    assertEquals(HazelcastMapStoreFactory.tableName("2fa-codes"),
+        "map_2fa_codes");
+    assertEquals(HazelcastMapStoreFactory.tableName("_users"), "map__users");
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_maps_sharing_a_table_are_rejected() {
+    newFactory().register("a-b", String.class, User.class)
+        .register("a_b", String.class, User.class);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_default_table_is_reserved() {
+    newFactory().register("HZEntry", String.class, User.class);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void test_staging_tables_are_reserved() {
+    newFactory().register("users-staging", String.class, User.class);
+  }
+
+  @Test
+  public void test_map_registered_again_keeps_its_table() {
+    final HazelcastMapStoreFactory factory = newFactory()
+        .register("users", String.class, User.class)
+        .register("users", String.class, User.class);
+
+    assertEquals(factory.getValueClass("users"), User.class);
+  }
+
+  // private API
+  private static HazelcastMapStoreFactory newFactory() {
+    return new HazelcastMapStoreFactory((table) -> null);
+  }
+}
@@ -0,0 +1,252 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore;
+
+import com.fferreira.example.hazelcast.User;
+import com.fferreira.example.hazelcast.mapstore.codec.KeyCodec;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+@Test(suiteName = "Hazelcast Map Store Test")
+public class HazelcastMapStoreTest {
+
+  @Test
+  public void test_update_of_a_loaded_user_is_stored() {
+    final HazelcastMapStore<String, User> store = newStore();
+    store.store("a", new User("Flávio", "Ferreira", "Portugal"));
+
+    // read-modify-put, the value read back carries no version of its own
+    final User user = store.load("a");
+    user.setLastName("Silva");
+    store.store("a", user);
+
+    assertEquals(store.load("a").getLastName(), "Silva");
+  }
+
+  @Test
+  public void test_put_after_delete_is_stored() {
+    final HazelcastMapStore<String, User> store = newStore();
+    final User user = new User("Flávio", "Ferreira", "Portugal");
+    store.store("a", user);
+    store.delete("a");
+    assertNull(store.load("a"));
+
+    store.store("a", user);
+
+    assertEquals(store.load("a"), user);
+  }
+
+  @Test
+  public void test_put_after_delete_is_stored_through_write_buffer() {
+    final HazelcastMapStore<String, User> store = newStore();
+    store.enableWriteBuffer(100, 0);
+    final User user = new User("Flávio", "Ferreira", "Portugal");
+    store.store("a", user);
+    store.flush();
+    store.delete("a");
+    store.flush();
+
+    store.store("a", user);
+    store.flush();
+
+    assertEquals(store.getDao().find("a").getId(), "a");
+    assertEquals(store.load("a"), user);
+  }
+
+  @Test
+  public void test_users_written_with_a_version_still_load() {
+    final HazelcastMapStore<String, User> store = newStore();
+    store.getDao().persist(new EntryEntity("a", ("{\"firtName\":\"Flávio\","
+        + "\"lastName\":\"Ferreira\",\"country\":\"Portugal\","
+        + "\"version\":1}").getBytes(StandardCharsets.UTF_8), 1L));
+
+    assertEquals(store.load("a"), new User("Flávio", "Ferreira",
+        "Portugal"));
+  }
+
+  @Test
+  public void test_closing_the_keys_closes_the_dao_scan() throws Exception {
+    final ClosingIterator ids = new ClosingIterator(Arrays.asList("a", "b")
+        .iterator());
+    final HazelcastMapStore<String, User> store = new HazelcastMapStore<>(
+        String.class, User.class, new TimestampedDao() {
+      @Override
+      public Iterable<String> findAllIds() {
+        return () -> ids;
+      }
+    });
+
+    final Iterator<String> keys = store.loadAllKeys().iterator();
+    assertEquals(keys.next(), "a");
+    assertTrue(keys instanceof Closeable);
+    ((Closeable) keys).close();
+
+    assertTrue(ids.closed);
+  }
+
+  @Test
+  public void test_keys_failing_to_encode_are_skipped() {
+    final HazelcastMapStore<String, User> store = newStore();
+    store.setKeyCodec(new KeyCodec<String>() {
+      @Override
+      public String encode(String key) throws IOException {
+        if (key.isEmpty()) {
+          throw new IOException("empty key");
+        }
+        return key;
+      }
+
+      @Override
+      public String decode(String id) {
+        return id;
+      }
+    });
+    final User user = new User("Flávio", "Ferreira", "Portugal");
+    final Map<String, User> users = new HashMap<>();
+    users.put("", user);
+    users.put("a", user);
+
+    store.store("", user);
+    store.storeAll(users);
+
+    assertEquals(store.getDao().findAll().size(), 1);
+    assertEquals(store.load("a"), user);
+  }
+
+  @Test
+  public void test_metrics_are_named_after_the_map() {
+    final HazelcastMapStore<String, User> store = newStore();
+    store.init(null, new Properties(), "users");
+
+    store.store("a", new User("Flávio", "Ferreira", "Portugal"));
+
+    assertEquals(store.getMetrics().getRegistry().timer(HazelcastMapStore
+        .metricsName("users") + ".store.calls").getCount(), 1);
+  }
+
+  // private API
+  private static HazelcastMapStore<String, User> newStore() {
+    return new HazelcastMapStore<>(String.class, User.class,
+        new TimestampedDao());
+  }
+
+  private static class ClosingIterator implements Iterator<String>,
+      AutoCloseable {
+
+    private final Iterator<String> ids;
+    private boolean closed;
+
+    ClosingIterator(final Iterator<String> ids) {
+      this.ids = ids;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return ids.hasNext();
+    }
+
+    @Override
+    public String next() {
+      return ids.next();
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  /**
+   * Keeps the newest write of every id like Cassandra does with write
+   * timestamps, deletes leaving a tombstone with their version.
+   */
+  private static class TimestampedDao implements HazelcastDao<EntryEntity> {
+
+    private final Map<String, EntryEntity> rows = new ConcurrentHashMap<>();
+
+    @Override
+    public void persist(EntryEntity val) {
+      rows.merge(val.getId(), val, (row, write) -> write.getVersion() > row
+          .getVersion() ? write : row);
+    }
+
+    @Override
+    public void persistAll(Collection<EntryEntity> vals) {
+      vals.stream().
+          forEach((val) -> {
+            persist(val);
+      });
+    }
+
+    @Override
+    public void remove(String id, long version) {
+      rows.merge(id, new EntryEntity(id, null, version), (row, delete)
+          -> delete.getVersion() >= row.getVersion() ? delete : row);
+    }
+
+    @Override
+    public void removeAll(Map<String, Long> versions) {
+      versions.forEach((id, version) -> {
+        remove(id, version);
+      });
+    }
+
+    @Override
+    public EntryEntity find(String id) {
+      final EntryEntity row = rows.get(id);
+      return row == null || row.getMessage() == null ? null : row;
+    }
+
+    @Override
+    public List<EntryEntity> findAll() {
+      return findAll(rows.keySet());
+    }
+
+    @Override
+    public Iterable<String> findAllIds() {
+      final List<String> ids = new ArrayList<>();
+      findAll().stream().
+          forEach((row) -> {
+            ids.add(row.getId());
+      });
+      return ids;
+    }
+
+    @Override
+    public List<EntryEntity> findAll(Collection<String> ids) {
+      final List<EntryEntity> found = new ArrayList<>();
+      ids.stream().
+          forEach((id) -> {
+            final EntryEntity row = find(id);
+            if (row != null) {
+              found.add(row);
+            }
+      });
+      return found;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+@Test(suiteName = "Staged Batch Test")
+public class StagedBatchTest {
+
+  @Test
+  public void test_entries_are_binary_copy_tuples() throws IOException {
+    try (StagedBatch batch = new StagedBatch(new DirectBufferPool())) {
+      batch.message().write(bytes("{\"a\":1}"));
+      batch.add("kéy", 42L);
+
+      final List<ByteBuffer> buffers = batch.buffers();
+      assertEquals(buffers.size(), 1);
+      final ByteBuffer tuple = buffers.get(0);
+      final byte[] id = bytes("kéy");
+      final byte[] message = bytes("{\"a\":1}");
+      assertEquals(tuple.remaining(), StagedBatch.HEADER_LENGTH + id.length
+          + message.length);
+
+      assertEquals(tuple.getShort(), 3);
+      assertEquals(tuple.getInt(), id.length);
+      assertEquals(read(tuple, id.length), id);
+      assertEquals(tuple.getInt(), 8);
+      assertEquals(tuple.getLong(), 42L);
+      assertEquals(tuple.getInt(), message.length);
+      assertEquals(read(tuple, message.length), message);
+      assertEquals(tuple.remaining(), 0);
+    }
+  }
+
+  @Test
+  public void test_entries_never_span_buffers() throws IOException {
+    // room for two of the entries below per buffer
+    final DirectBufferPool pool = new DirectBufferPool(2
+        * (StagedBatch.HEADER_LENGTH + 2 + 3) + 1, 4);
+    final List<String> ids = new ArrayList<>();
+    final List<Long> versions = new ArrayList<>();
+    final List<String> messages = new ArrayList<>();
+    try (StagedBatch batch = new StagedBatch(pool)) {
+      for (int i = 0; i < 5; i++) {
+        batch.message().write(bytes("m" + i + "!"));
+        batch.add("k" + i, i);
+      }
+      // a message dropped before its entry was added leaves no trace
+      batch.message().write(bytes("dropped"));
+      batch.discard();
+      batch.message().write(bytes("m5!"));
+      batch.add("k5", 5);
+
+      assertEquals(batch.size(), 6);
+      assertEquals(batch.buffers().size(), 3);
+      batch.forEach((id, version, message) -> {
+        ids.add(string(id));
+        versions.add(version.getLong());
+        messages.add(string(message));
+      });
+    }
+
+    assertEquals(ids, Arrays.asList("k0", "k1", "k2", "k3", "k4", "k5"));
+    assertEquals(versions, Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L));
+    assertEquals(messages, Arrays.asList("m0!", "m1!", "m2!", "m3!", "m4!",
+        "m5!"));
+  }
+
+  @Test
+  public void test_buffers_beyond_the_direct_cap_are_on_heap() {
+    final DirectBufferPool pool = new DirectBufferPool(1024, 4, 2 * 1024);
+    final ByteBuffer first = pool.acquire(10);
+    final ByteBuffer second = pool.acquire(10);
+
+    final ByteBuffer third = pool.acquire(10);
+    assertTrue(first.isDirect() && second.isDirect());
+    assertFalse(third.isDirect());
+    assertEquals(pool.getDirectBytes(), 2 * 1024);
+
+    // heap buffers are not pooled, released direct ones are reused
+    pool.release(third);
+    pool.release(second);
+    assertTrue(pool.acquire(10) == second);
+    assertEquals(pool.getDirectBytes(), 2 * 1024);
+  }
+
+  @Test
+  public void test_dropped_buffers_give_back_their_direct_bytes() {
+    final DirectBufferPool pool = new DirectBufferPool(1024, 0, 4 * 1024);
+    final ByteBuffer oversized = pool.acquire(3 * 1024);
+    final ByteBuffer chunk = pool.acquire(10);
+    assertFalse(pool.acquire(10).isDirect());
+
+    pool.release(oversized);
+    pool.release(chunk);
+
+    assertEquals(pool.getDirectBytes(), 0);
+    assertTrue(pool.acquire(4 * 1024).isDirect());
+  }
+
+  // private API
+  private static byte[] bytes(final String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] read(final ByteBuffer buffer, final int length) {
+    final byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  private static String string(final ByteBuffer field) {
+    return new String(read(field, field.remaining()), StandardCharsets.UTF_8);
+  }
+}
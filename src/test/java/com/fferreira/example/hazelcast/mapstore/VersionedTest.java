@@ -0,0 +1,53 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+@Test(suiteName = "Versioned Test")
+public class VersionedTest {
+
+  @Test
+  public void test_back_to_back_versions_increase() {
+    // far more calls than fit in one millisecond, so the clock ties
+    long previous = Versioned.now();
+    for (int i = 0; i < 100000; i++) {
+      final long version = Versioned.now();
+      assertTrue(version > previous, version + " <= " + previous);
+      previous = version;
+    }
+  }
+
+  @Test
+  public void test_versions_are_microseconds() {
+    final long before = System.currentTimeMillis() * 1000;
+    final long version = Versioned.now();
+
+    assertTrue(version >= before);
+    assertTrue(version < (System.currentTimeMillis() + 1000) * 1000);
+  }
+
+  @Test
+  public void test_concurrent_versions_are_unique() {
+    final Set<Long> versions = ConcurrentHashMap.newKeySet();
+    IntStream.range(0, 100000).parallel().
+        forEach((i) -> versions.add(Versioned.now()));
+
+    assertEquals(versions.size(), 100000);
+  }
+}
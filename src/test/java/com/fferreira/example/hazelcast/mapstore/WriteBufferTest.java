@@ -0,0 +1,107 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+@Test(suiteName = "Write Buffer Test")
+public class WriteBufferTest {
+
+  @Test
+  public void test_repeated_stores_keep_the_latest() {
+    final WriteBuffer buffer = new WriteBuffer();
+    final EntryEntity first = entry("a", "1");
+    final EntryEntity second = entry("a", "2");
+
+    assertEquals(buffer.store(first), 1);
+    assertEquals(buffer.store(entry("b", "1")), 2);
+    assertEquals(buffer.store(second), 2);
+
+    final Map<String, EntryEntity> writes = buffer.drain();
+    assertEquals(new ArrayList<>(writes.keySet()), Arrays.asList("a", "b"));
+    assertSame(writes.get("a"), second);
+  }
+
+  @Test
+  public void test_delete_cancels_pending_store() {
+    final WriteBuffer buffer = new WriteBuffer();
+    buffer.store(entry("a", "1"));
+
+    assertEquals(buffer.delete("a", 2), 1);
+
+    assertTrue(WriteBuffer.isDeleted(buffer.get("a")));
+    final EntryEntity deleted = buffer.drain().get("a");
+    assertTrue(WriteBuffer.isDeleted(deleted));
+    assertEquals(deleted.getVersion().longValue(), 2);
+  }
+
+  @Test
+  public void test_flushing_entries_stay_visible_until_completed() {
+    final WriteBuffer buffer = new WriteBuffer();
+    final EntryEntity stored = entry("a", "1");
+    buffer.store(stored);
+
+    buffer.drain();
+    assertEquals(buffer.size(), 0);
+    assertSame(buffer.get("a"), stored);
+
+    buffer.completed();
+    assertNull(buffer.get("a"));
+  }
+
+  @Test
+  public void test_restore_keeps_newer_writes() {
+    final WriteBuffer buffer = new WriteBuffer();
+    buffer.store(entry("a", "1"));
+    buffer.store(entry("b", "1"));
+    buffer.drain();
+    // arrive while the flush is running
+    final EntryEntity newer = entry("a", "2");
+    buffer.store(newer);
+    buffer.delete("b", 2);
+
+    buffer.restore();
+
+    assertEquals(buffer.size(), 2);
+    assertSame(buffer.get("a"), newer);
+    assertTrue(WriteBuffer.isDeleted(buffer.get("b")));
+  }
+
+  @Test
+  public void test_restore_puts_back_failed_writes() {
+    final WriteBuffer buffer = new WriteBuffer();
+    final EntryEntity stored = entry("a", "1");
+    buffer.store(stored);
+    buffer.drain();
+
+    buffer.restore();
+
+    final Map<String, EntryEntity> writes = buffer.drain();
+    assertEquals(writes.size(), 1);
+    assertSame(writes.get("a"), stored);
+    buffer.completed();
+    assertTrue(buffer.drain().isEmpty());
+  }
+
+  // private API
+  private static EntryEntity entry(final String id, final String message) {
+    return new EntryEntity(id, message.getBytes());
+  }
+}
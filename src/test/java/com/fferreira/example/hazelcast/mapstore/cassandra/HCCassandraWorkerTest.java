@@ -20,7 +20,13 @@ import com.fferreira.example.hazelcast.MyHazelcastInstance;
 import com.fferreira.example.hazelcast.User;
 import com.fferreira.example.hazelcast.mapstore.EntryEntity;
 import com.fferreira.example.hazelcast.mapstore.HazelcastMapStore;
+import com.hazelcast.config.MapIndexConfig;
+import com.hazelcast.monitor.NearCacheStats;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 import static org.testng.AssertJUnit.assertEquals;
 import org.testng.annotations.AfterClass;
@@ -48,19 +54,11 @@ public class HCCassandraWorkerTest {
   @BeforeClass
   public void setUpClass() throws Exception {
 
-    // creating cassandra client with IP added to POM.
+    // creating cassandra client with IP added to POM, it also creates the
+    // data keyspace and table
     dao = new CassandraClient();
     dao.initialize(System.getProperty("cassandra.ip"));
 
-    // creating data keyspace and table
-    final Session session = dao.connect();
-    session.execute("CREATE KEYSPACE IF NOT EXISTS "
-        + Constants.CASSANDRA_KEYSPACE + " WITH replication "
-        + "= {'class':'SimpleStrategy', 'replication_factor':3};");
-    session.execute("CREATE TABLE IF NOT EXISTS "
-        + Constants.CASSANDRA_KEYSPACE_TABLE_NAME + " ("
-        + "id text PRIMARY KEY," + "data text" + ");");
-
     mapStore = new HazelcastMapStore(String.class, User.class, dao);
 
     // starting 3 instances of hazelcast
@@ -81,6 +79,7 @@ public class HCCassandraWorkerTest {
     // stoping hazelcast instance and client
     store.destroy();
     worker.destroy();
+    dao.close();
   }
 
   @Test(groups = CREATE_GROUP, invocationCount = 3)
@@ -148,4 +147,65 @@ public class HCCassandraWorkerTest {
         user.getFirtName());
   }
 
+  @Test(dependsOnGroups = COLD_START_GROUP)
+  public void test_get_user_from_near_cache() {
+    final HazelcastWorker cachingWorker = new HazelcastWorker(
+        Constants.CASSANDRA_MAP_STORE, HazelcastWorker.nearCacheConfig(100, 0));
+    try {
+      // first read misses and fills the near cache, the second one hits it
+      assertEquals(user, cachingWorker.getUser(id));
+      assertEquals(user, cachingWorker.getUser(id));
+
+      final NearCacheStats stats = cachingWorker.getNearCacheStats();
+      assertEquals(1, stats.getMisses());
+      assertEquals(1, stats.getHits());
+    } finally {
+      cachingWorker.destroy();
+    }
+  }
+
+  @Test(dependsOnGroups = COLD_START_GROUP)
+  public void test_get_user_with_given_message_ignoring_case() {
+    final MapIndexConfig index = store.getConfig()//
+        .getMapConfig(Constants.CASSANDRA_MAP_STORE)//
+        .getMapIndexConfigs()//
+        .get(0);
+    assertEquals(User.FIRST_NAME_NORMALIZED, index.getAttribute());
+    assertEquals(false, index.isOrdered());
+
+    final Collection<User> users = worker.getUsersByFirstName(user
+        .getFirtName().toUpperCase(Locale.ROOT));
+    assertEquals(1, users.size());
+    assertEquals(user, users.iterator().next());
+  }
+
+  @Test(dependsOnGroups = COLD_START_GROUP)
+  public void test_page_and_stream_users_with_given_message() {
+    final List<User> paged = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      final User pagedUser = new User("Paged", "Ferreira" + i, "Portugal");
+      worker.addUser("user_cassandra_paged_" + i, pagedUser);
+      paged.add(pagedUser);
+    }
+
+    try {
+      // pages are ordered by id, the last one holds the remainder
+      assertEquals(paged.subList(0, 2), new ArrayList<>(worker
+          .getUsersByFirstName("Paged", 0, 2)));
+      assertEquals(paged.subList(4, 5), new ArrayList<>(worker
+          .getUsersByFirstName("Paged", 2, 2)));
+      assertEquals(0, worker.getUsersByFirstName("Paged", 3, 2).size());
+      assertEquals(5, worker.getUsersByFirstName("paged").size());
+
+      final List<User> streamed = new ArrayList<>();
+      final Iterator<User> iterator = worker.streamUsersByFirstName("Paged", 2);
+      iterator.forEachRemaining(streamed::add);
+      assertEquals(paged, streamed);
+    } finally {
+      for (int i = 0; i < paged.size(); i++) {
+        worker.removeUser("user_cassandra_paged_" + i);
+      }
+    }
+  }
+
 }
@@ -0,0 +1,54 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import static org.testng.Assert.assertEquals;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+@Test(suiteName = "Composite Key Codec Test")
+public class CompositeKeyCodecTest {
+
+  // parts are their own key
+  private final CompositeKeyCodec<List<String>> codec =
+      new CompositeKeyCodec<>((parts) -> parts, (parts) -> parts);
+
+  @DataProvider
+  public Object[][] keys() {
+    return new Object[][]{
+      {Arrays.asList("acme", "42"), "acme:42"},
+      {Arrays.asList("", "42"), ":42"},
+      {Arrays.asList("", "", "42"), "::42"},
+      {Arrays.asList("acme", ""), "acme:"},
+      {Arrays.asList("", ""), ":"},
+      {Arrays.asList("a:b", "c\\d"), "a\\:b:c\\\\d"},
+      {Arrays.asList(":", "\\"), "\\::\\\\"},
+      {Arrays.asList("acme"), "acme"}
+    };
+  }
+
+  @Test(dataProvider = "keys")
+  public void test_round_trip(final List<String> key, final String id)
+      throws IOException {
+    assertEquals(codec.encode(key), id);
+    assertEquals(codec.decode(id), key);
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void test_dangling_escape() throws IOException {
+    codec.decode("acme\\");
+  }
+}
@@ -0,0 +1,154 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore.codec;
+
+import com.fferreira.example.hazelcast.User;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import org.testng.annotations.Test;
+
+@Test(suiteName = "Compressing Codec Test")
+public class CompressingCodecTest {
+
+  private final JacksonCodec<User> json = JacksonCodec.json(User.class);
+  private final CompressingCodec<User> codec = new CompressingCodec<>(json);
+
+  @Test
+  public void test_legacy_rows_decode_through_delegate() throws Exception {
+    final User user = new User("John", "Doe", "PT");
+    // rows written before compression was enabled have no header
+    final byte[] legacy = json.encode(user);
+
+    assertEquals(codec.decode(legacy), user);
+  }
+
+  @Test
+  public void test_small_values_are_stored_raw() throws Exception {
+    final User user = new User("John", "Doe", "PT");
+    final byte[] raw = json.encode(user);
+    assertTrue(raw.length < CompressingCodec.DEFAULT_THRESHOLD);
+
+    final byte[] encoded = codec.encode(user);
+
+    assertEquals(encoded, raw);
+    assertEquals(codec.decode(encoded), user);
+  }
+
+  @Test
+  public void test_raw_values_looking_like_a_header_get_one() throws Exception {
+    final CompressingCodec<byte[]> bytes = new CompressingCodec<>(
+        new BytesCodec());
+    final byte[] raw = Arrays.copyOf(CompressingCodec.MAGIC,
+        CompressingCodec.HEADER_SIZE + 2);
+
+    final byte[] encoded = bytes.encode(raw);
+    final ByteBuffer buffer = ByteBuffer.wrap(encoded);
+    final byte[] magic = new byte[CompressingCodec.MAGIC.length];
+    buffer.get(magic);
+
+    assertEquals(magic, CompressingCodec.MAGIC);
+    assertEquals(buffer.get(), CompressingCodec.FORMAT_RAW);
+    assertEquals(buffer.getInt(), raw.length);
+    assertEquals(Arrays.copyOfRange(encoded, CompressingCodec.HEADER_SIZE,
+        encoded.length), raw);
+    assertEquals(bytes.decode(encoded), raw);
+  }
+
+  @Test
+  public void test_large_values_are_compressed() throws Exception {
+    final User user = largeUser();
+    final byte[] raw = json.encode(user);
+
+    final byte[] encoded = codec.encode(user);
+
+    assertEquals(encoded[CompressingCodec.MAGIC.length],
+        CompressingCodec.FORMAT_ZSTD);
+    assertTrue(encoded.length < raw.length);
+    assertEquals(codec.decode(encoded), user);
+  }
+
+  @Test
+  public void test_dictionary_values_carry_the_dictionary_id()
+      throws Exception {
+    final byte[] dictionary = dictionary();
+    final CompressingCodec<User> dict = withDictionary(dictionary);
+    final User user = largeUser();
+
+    final byte[] encoded = dict.encode(user);
+    final ByteBuffer buffer = ByteBuffer.wrap(encoded,
+        CompressingCodec.MAGIC.length, encoded.length
+        - CompressingCodec.MAGIC.length);
+
+    assertEquals(buffer.get(), CompressingCodec.FORMAT_ZSTD_DICT);
+    assertEquals(buffer.getInt(), json.encode(user).length);
+    assertEquals(buffer.getInt(), CompressingCodec.dictionaryId(dictionary));
+    assertEquals(dict.decode(encoded), user);
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void test_other_dictionary_is_rejected() throws Exception {
+    final byte[] dictionary = dictionary();
+    final byte[] encoded = withDictionary(dictionary).encode(largeUser());
+    final byte[] other = Arrays.copyOf(dictionary, dictionary.length);
+    other[other.length - 1]++;
+
+    withDictionary(other).decode(encoded);
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void test_missing_dictionary_is_rejected() throws Exception {
+    codec.decode(withDictionary(dictionary()).encode(largeUser()));
+  }
+
+  // private API
+  private CompressingCodec<User> withDictionary(final byte[] dictionary) {
+    return new CompressingCodec<>(json, CompressingCodec.DEFAULT_THRESHOLD,
+        CompressingCodec.DEFAULT_LEVEL, dictionary);
+  }
+
+  private byte[] dictionary() throws IOException {
+    final List<byte[]> samples = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      samples.add(json.encode(new User("John" + i, "Doe" + (i % 7), "PT"
+          + (i % 13))));
+    }
+    return CompressingCodec.trainDictionary(samples, 4096);
+  }
+
+  private static User largeUser() {
+    final char[] name = new char[4 * CompressingCodec.DEFAULT_THRESHOLD];
+    Arrays.fill(name, 'a');
+    return new User(new String(name), "Doe", "PT");
+  }
+
+  /**
+   * Hands the bytes to encode over as they are.
+   */
+  private static class BytesCodec implements ValueCodec<byte[]> {
+
+    @Override
+    public byte[] encode(final byte[] value) {
+      return value;
+    }
+
+    @Override
+    public byte[] decode(final byte[] bytes) {
+      return bytes;
+    }
+  }
+}
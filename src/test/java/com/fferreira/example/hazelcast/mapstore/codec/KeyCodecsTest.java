@@ -0,0 +1,44 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore.codec;
+
+import java.io.IOException;
+import java.util.UUID;
+import static org.testng.Assert.assertEquals;
+import org.testng.annotations.Test;
+
+@Test(suiteName = "Key Codecs Test")
+public class KeyCodecsTest {
+
+  @Test
+  public void test_ids_match_the_json_key_encoding() throws IOException {
+    final UUID uuid = UUID.randomUUID();
+
+    // rows stored before the key codecs keep being found by their ids
+    assertEquals(KeyCodecs.uuids().encode(uuid), KeyCodecs.json(UUID.class)
+        .encode(uuid));
+    assertEquals(KeyCodecs.longs().encode(42L), KeyCodecs.json(Long.class)
+        .encode(42L));
+    assertEquals(KeyCodecs.ints().encode(-7), KeyCodecs.json(Integer.class)
+        .encode(-7));
+  }
+
+  @Test
+  public void test_uuid_ids_decode_quoted_or_not() throws IOException {
+    final UUID uuid = UUID.randomUUID();
+
+    assertEquals(KeyCodecs.uuids().decode(KeyCodecs.uuids().encode(uuid)),
+        uuid);
+    assertEquals(KeyCodecs.uuids().decode(uuid.toString()), uuid);
+  }
+}
@@ -19,13 +19,14 @@ import com.fferreira.example.hazelcast.MyHazelcastInstance;
 import com.fferreira.example.hazelcast.User;
 import com.fferreira.example.hazelcast.mapstore.EntryEntity;
 import com.fferreira.example.hazelcast.mapstore.HazelcastMapStore;
+import com.hazelcast.config.MapIndexConfig;
+import com.hazelcast.monitor.NearCacheStats;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
-import javax.persistence.EntityManager;
-import javax.persistence.EntityManagerFactory;
-import javax.persistence.EntityTransaction;
-import javax.persistence.FlushModeType;
-import javax.persistence.Persistence;
 import static org.testng.Assert.assertEquals;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
@@ -39,9 +40,6 @@ public class HCPostgresWorkerTest {
   private static final String COLD_START_GROUP = "cold_start_group";
 
   private EntryEntityDao dao;
-  private EntityManagerFactory entityManagerFactory;
-  private EntityManager entityManager;
-  private EntityTransaction tx;
 
   private HazelcastWorker worker;
   private MyHazelcastInstance store;
@@ -54,16 +52,8 @@ public class HCPostgresWorkerTest {
 
   @BeforeClass
   public void setUpClass() throws Exception {
-    entityManagerFactory = Persistence
-        .createEntityManagerFactory("postgres_test");
-    entityManager = entityManagerFactory.createEntityManager();
-    entityManager.setFlushMode(FlushModeType.COMMIT);
-    entityManager.clear();
-    tx = entityManager.getTransaction();
-
-    // provision daos
-    dao = new EntryEntityDao();
-    dao.setEntityManager(entityManager);
+    // provision daos, the dao owns its pooled entity manager factory
+    dao = new EntryEntityDao("postgres_test");
 
     mapStore = new HazelcastMapStore(String.class, User.class, dao);
     store = new MyHazelcastInstance(mapStore, Constants.POSTGRES_MAP_STORE);
@@ -72,11 +62,10 @@ public class HCPostgresWorkerTest {
 
   @AfterClass
   public void tearDownClass() throws Exception {
-    entityManager.close();
-    entityManagerFactory.close();
     // stoping hazelcast instance and client
     store.destroy();
     worker.destroy();
+    dao.close();
   }
 
   @Test(groups = CREATE_GROUP, invocationCount = 3)
@@ -84,36 +73,18 @@ public class HCPostgresWorkerTest {
     counter++;
     id = "user_postgres_" + counter + "_" + UUID.randomUUID();
     user = new User("Flávio" + counter, "Ferreira" + counter, "Portugal");
-    try {
-      tx.begin();
-      worker.addUser(id, user);
-      // just give time to it since it is async
-      Thread.sleep(3000);
-      tx.commit();
-    } catch (Exception ex) {
-      if (tx.isActive()) {
-        tx.rollback();
-      }
-      throw ex;
-    }
+    worker.addUser(id, user);
+    // just give time to it since it is async
+    Thread.sleep(3000);
     assertEquals(dao.count(), counter);
   }
 
   @Test(dependsOnGroups = CREATE_GROUP, groups = RUD_GROUP)
   public void test_remove_subscriber() throws Exception {
-    try {
-      tx.begin();
-      worker.removeUser(id);
-      // just give time to it since it is async
-      Thread.sleep(3000);
-      counter--;
-      tx.commit();
-    } catch (Exception ex) {
-      if (tx.isActive()) {
-        tx.rollback();
-      }
-      throw ex;
-    }
+    worker.removeUser(id);
+    // just give time to it since it is async
+    Thread.sleep(3000);
+    counter--;
 
     assertEquals(dao.count(), counter);
 
@@ -159,4 +130,65 @@ public class HCPostgresWorkerTest {
         user.getFirtName());
   }
 
+  @Test(dependsOnGroups = COLD_START_GROUP)
+  public void test_get_user_from_near_cache() {
+    final HazelcastWorker cachingWorker = new HazelcastWorker(
+        Constants.POSTGRES_MAP_STORE, HazelcastWorker.nearCacheConfig(100, 0));
+    try {
+      // first read misses and fills the near cache, the second one hits it
+      assertEquals(cachingWorker.getUser(id), user);
+      assertEquals(cachingWorker.getUser(id), user);
+
+      final NearCacheStats stats = cachingWorker.getNearCacheStats();
+      assertEquals(stats.getMisses(), 1);
+      assertEquals(stats.getHits(), 1);
+    } finally {
+      cachingWorker.destroy();
+    }
+  }
+
+  @Test(dependsOnGroups = COLD_START_GROUP)
+  public void test_get_user_with_given_message_ignoring_case() {
+    final MapIndexConfig index = store.getConfig()//
+        .getMapConfig(Constants.POSTGRES_MAP_STORE)//
+        .getMapIndexConfigs()//
+        .get(0);
+    assertEquals(index.getAttribute(), User.FIRST_NAME_NORMALIZED);
+    assertEquals(index.isOrdered(), false);
+
+    final Collection<User> users = worker.getUsersByFirstName(user
+        .getFirtName().toUpperCase(Locale.ROOT));
+    assertEquals(users.size(), 1);
+    assertEquals(users.iterator().next(), user);
+  }
+
+  @Test(dependsOnGroups = COLD_START_GROUP)
+  public void test_page_and_stream_users_with_given_message() {
+    final List<User> paged = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      final User pagedUser = new User("Paged", "Ferreira" + i, "Portugal");
+      worker.addUser("user_postgres_paged_" + i, pagedUser);
+      paged.add(pagedUser);
+    }
+
+    try {
+      // pages are ordered by id, the last one holds the remainder
+      assertEquals(new ArrayList<>(worker.getUsersByFirstName("Paged",
+          0, 2)), paged.subList(0, 2));
+      assertEquals(new ArrayList<>(worker.getUsersByFirstName("Paged",
+          2, 2)), paged.subList(4, 5));
+      assertEquals(worker.getUsersByFirstName("Paged", 3, 2).size(), 0);
+      assertEquals(worker.getUsersByFirstName("paged").size(), 5);
+
+      final List<User> streamed = new ArrayList<>();
+      final Iterator<User> iterator = worker.streamUsersByFirstName("Paged", 2);
+      iterator.forEachRemaining(streamed::add);
+      assertEquals(streamed, paged);
+    } finally {
+      for (int i = 0; i < paged.size(); i++) {
+        worker.removeUser("user_postgres_paged_" + i);
+      }
+    }
+  }
+
 }
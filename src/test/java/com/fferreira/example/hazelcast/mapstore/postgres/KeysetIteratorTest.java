@@ -0,0 +1,86 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.fferreira.example.hazelcast.mapstore.postgres;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import org.testng.annotations.Test;
+
+@Test(suiteName = "Keyset Iterator Test")
+public class KeysetIteratorTest {
+
+  private static final int PAGE_SIZE = 3;
+
+  @Test
+  public void test_empty_table() {
+    final List<String> after = new ArrayList<>();
+    final KeysetIterator iterator = iterator(ids(0), after);
+
+    assertFalse(iterator.hasNext());
+    assertEquals(after, Arrays.asList((String) null));
+  }
+
+  @Test
+  public void test_partial_last_page() {
+    final List<String> after = new ArrayList<>();
+
+    assertEquals(drain(iterator(ids(7), after)), ids(7));
+    assertEquals(after, Arrays.asList(null, "id02", "id05"));
+  }
+
+  @Test
+  public void test_exact_multiple_of_page_size() {
+    final List<String> after = new ArrayList<>();
+
+    // a full last page needs one more, empty, page to end the scan
+    assertEquals(drain(iterator(ids(6), after)), ids(6));
+    assertEquals(after, Arrays.asList(null, "id02", "id05"));
+  }
+
+  @Test(expectedExceptions = NoSuchElementException.class)
+  public void test_next_past_the_end() {
+    final KeysetIterator iterator = iterator(ids(1), new ArrayList<>());
+    iterator.next();
+    iterator.next();
+  }
+
+  // private API
+  private static KeysetIterator iterator(final List<String> ids,
+      final List<String> after) {
+    return new KeysetIterator((last) -> {
+      after.add(last);
+      return ids.stream()//
+          .filter((id) -> last == null || id.compareTo(last) > 0)//
+          .limit(PAGE_SIZE)//
+          .collect(Collectors.toList());
+    }, PAGE_SIZE);
+  }
+
+  private static List<String> ids(final int count) {
+    return IntStream.range(0, count)//
+        .mapToObj((i) -> String.format("id%02d", i))//
+        .collect(Collectors.toList());
+  }
+
+  private static List<String> drain(final KeysetIterator iterator) {
+    final List<String> ids = new ArrayList<>();
+    iterator.forEachRemaining(ids::add);
+    return ids;
+  }
+}